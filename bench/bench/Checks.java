@@ -0,0 +1,164 @@
+package bench;
+
+import io.ProjectsJournal;
+import io.ProjectsJsonLines;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.matcher.ITaskMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Correctness checks on the benchmark data sets, run by {@code gradle check} so a
+ * fast benchmark result of a broken build is not mistaken for an improvement. A
+ * failed check throws an {@link IllegalStateException}.
+ * <pre>
+ * gradle bench -Pargs='1000,100000,1000000'
+ * </pre>
+ */
+public final class Checks {
+
+    private static final String DEFAULT_SIZES = "1000,100000";
+    private static final int STRESS_THREADS = 16;
+    private static final int STRESS_OPS_PER_THREAD = 5_000;
+    private static final int MAX_STREAM_EVALUATIONS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        String sizes = args.length > 0 ? args[0] : DEFAULT_SIZES;
+        for (String size : sizes.split(",")) {
+            run(new Dataset(Integer.parseInt(size.trim())));
+        }
+        takenByMatcherBuiltFirst();
+        journalReplaysTaskIdChange();
+        new LockStress(STRESS_THREADS, STRESS_OPS_PER_THREAD).run();
+    }
+
+    static void run(Dataset data) throws Exception {
+        jsonLinesRoundTrip(data);
+        streamStopsEarly(data);
+    }
+
+    /**
+     * Exports the projects as JSON lines, imports them into an empty manager and
+     * exports them again; both exports must be equal, so every attribute written,
+     * including the IDs, creation dates and next task IDs, survives the import.
+     */
+    static void jsonLinesRoundTrip(Dataset data) throws Exception {
+        StringWriter exported = new StringWriter();
+        long lines = ProjectsJsonLines.exportTo(data.manager, exported);
+
+        ProjectsManager imported = new ProjectsManager();
+        long added = ProjectsJsonLines.importFrom(new StringReader(exported.toString()), imported);
+        StringWriter reexported = new StringWriter();
+        ProjectsJsonLines.exportTo(imported, reexported);
+
+        if (added != lines || !exported.toString().equals(reexported.toString())) {
+            throw new IllegalStateException("JSON lines round trip changed the projects: "
+                    + lines + " lines exported, " + added + " imported");
+        }
+        System.out.println("check: JSON lines round trip of " + lines + " lines [" + data.taskCount + " tasks]");
+    }
+
+    /**
+     * Takes the first task of a stream over the largest project with a matcher that
+     * matches every task, and again with one that matches only the last task in order;
+     * the first must evaluate the matcher on a few hundred tasks at most, and the
+     * second must still find its task. A stream from the indexes must give the tasks
+     * of findTasks.
+     */
+    static void streamStopsEarly(Dataset data) {
+        Project project = data.bigProject;
+        int[] evaluated = new int[1];
+        Optional<Task> first = project.streamTasks(task -> ++evaluated[0] > 0).findFirst();
+        check(first.isPresent() && evaluated[0] <= MAX_STREAM_EVALUATIONS,
+                "findFirst on a stream evaluated " + evaluated[0] + " of " + project.getTaskCount() + " tasks");
+
+        List<Task> all = project.findTasks(task -> true);
+        Task lastTask = all.get(all.size() - 1);
+        check(project.streamTasks(task -> task == lastTask).findFirst().orElse(null) == lastTask
+                        && project.streamTasks(task -> true).count() == all.size(),
+                "stream did not walk every task");
+        ITaskMatcher high = new PrioMatcher(TaskPrio.High);
+        check(project.streamTasks(high).collect(Collectors.toList()).equals(project.findTasks(high)),
+                "stream from the indexes differs from findTasks");
+        System.out.println("check: findFirst on a stream evaluated " + evaluated[0] + " of "
+                + project.getTaskCount() + " tasks [" + data.taskCount + " tasks]");
+    }
+
+    /**
+     * Builds a {@link TakenByMatcher} for a name no task has been taken by, then has a
+     * task taken by that name; the matcher must find the task on its own, through the
+     * indexes and through the query cache, as must one built from another copy of the
+     * name afterwards.
+     */
+    static void takenByMatcherBuiltFirst() throws Exception {
+        String name = "checks-" + System.nanoTime();
+        TakenByMatcher first = new TakenByMatcher(name);
+        ProjectsManager manager = new ProjectsManager();
+        Project project = manager.addProject("Checks " + name, "");
+        Task task = project.addTask("Taken later", TaskPrio.Medium);
+        check(!first.match(task) && project.findTasks(first).isEmpty(),
+                "matcher for an unknown name matched a task");
+
+        task.setTakenBy(name);
+        TakenByMatcher copy = new TakenByMatcher(new String(name));
+        check(first.match(task), "matcher built first does not match the taken task");
+        check(project.findTasks(first).size() == 1, "matcher built first finds no task");
+        check(copy.match(task) && project.findTasks(copy).size() == 1,
+                "matcher for a copy of the name finds no task");
+        System.out.println("check: taken-by matcher built before the claim");
+    }
+
+    /**
+     * Changes the ID of a task with a journal attached and replays the journal into an
+     * empty manager; the task must be there once, under its new ID only.
+     */
+    static void journalReplaysTaskIdChange() throws Exception {
+        Path dir = Files.createTempDirectory("checks-journal");
+        File snapshotFile = dir.resolve("projects.ser").toFile();
+        File journalFile = dir.resolve("projects.journal").toFile();
+        try {
+            ProjectsManager manager = new ProjectsManager();
+            ProjectsJournal journal = ProjectsJournal.open(snapshotFile, journalFile, manager);
+            Project project = manager.addProject("Journal", "");
+            Task moved = project.addTask("Moved", TaskPrio.High);
+            project.addTask("Stays", TaskPrio.Low);
+            moved.setId(42);
+            journal.close();
+
+            ProjectsManager replayed = new ProjectsManager();
+            ProjectsJournal.open(snapshotFile, journalFile, replayed).close();
+            List<Integer> ids = new ArrayList<>();
+            for (Task task : replayed.getProjectById(project.getId()).getTasks()) {
+                ids.add(task.getId());
+            }
+            ids.sort(null);
+            check(ids.equals(List.of(1, 42)), "journal replayed the tasks with IDs " + ids + ", not [1, 42]");
+        } finally {
+            Files.deleteIfExists(journalFile.toPath());
+            Files.deleteIfExists(snapshotFile.toPath());
+            Files.delete(dir);
+        }
+        System.out.println("check: journal replays a task ID change");
+    }
+
+    private static void check(boolean ok, String failure) {
+        if (!ok) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    private Checks() {}
+}
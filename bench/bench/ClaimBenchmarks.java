@@ -0,0 +1,98 @@
+package bench;
+
+import model.Project;
+import model.Task;
+import model.TaskData;
+import model.TaskPrio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Contended task claims: every thread tries to claim the same fresh tasks in the same
+ * order, each task once, so each task has as many claimers as there are threads and
+ * exactly one of them wins. An iteration is one pass over the tasks, timed as a whole.
+ * Compares {@link Task#tryClaim(String)} with {@link Task#setTakenBy(String)}, which
+ * throws when the task is taken.
+ * <pre>
+ * gradle jmh -Pjmh='ClaimBenchmarks -t 32'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = ClaimBenchmarks.TASKS)
+@Measurement(iterations = 10, batchSize = ClaimBenchmarks.TASKS)
+@Threads(8)
+@Fork(1)
+public class ClaimBenchmarks {
+
+    static final int TASKS = 65_536;
+
+    private Task[] tasks;
+    private final AtomicInteger claimers = new AtomicInteger();
+
+    /** Fresh, unclaimed tasks for every iteration. */
+    @Setup(Level.Iteration)
+    public void generate() {
+        Project project = Project.restore(0, "Claims", "", LocalDate.of(2020, 1, 1), 0);
+        List<TaskData> data = new ArrayList<>(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            data.add(new TaskData("Task " + i, TaskPrio.Medium));
+        }
+        tasks = project.addTasks(data).toArray(new Task[0]);
+    }
+
+    /**
+     * One claiming thread: its user and the next task it tries.
+     */
+    @State(Scope.Thread)
+    public static class Claimer {
+        String user;
+        int next;
+
+        @Setup(Level.Trial)
+        public void name(ClaimBenchmarks benchmark) {
+            user = Dataset.assignee(benchmark.claimers.getAndIncrement());
+        }
+
+        @Setup(Level.Iteration)
+        public void rewind() {
+            next = 0;
+        }
+
+        Task nextTask(Task[] tasks) {
+            return tasks[next++];
+        }
+    }
+
+    @Benchmark
+    public boolean tryClaim(Claimer claimer) {
+        return claimer.nextTask(tasks).tryClaim(claimer.user);
+    }
+
+    @Benchmark
+    public boolean setTakenBy(Claimer claimer) {
+        try {
+            claimer.nextTask(tasks).setTakenBy(claimer.user);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package bench;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import model.matcher.ITaskMatcher;
+import model.matcher.PrioMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the model when many request threads share it: reading tasks, finding
+ * tasks, changing task states and a mix of them, on the projects of a data set.
+ * Run through {@link #main} to measure every benchmark with 1 to 32 threads and print
+ * how the throughput scales:
+ * <pre>
+ * gradle bench -Pmain=bench.ConcurrencyBenchmarks -Pargs='-p taskCount=1000000'
+ * </pre>
+ * Other JMH options are passed on, {@code -t} alone runs one thread count as usual.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrencyBenchmarks {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+    private static final TaskState[] STATES = TaskState.values();
+    private static final ITaskMatcher HIGH = new PrioMatcher(TaskPrio.High);
+
+    @Param({"100000"})
+    public int taskCount;
+
+    private ProjectsManager manager;
+    private int projectCount;
+
+    @Setup
+    public void generate() {
+        manager = new Dataset(taskCount).manager;
+        projectCount = manager.getProjectsView().size();
+    }
+
+    private Project randomProject(ThreadLocalRandom random) {
+        return manager.getProjectById(random.nextInt(projectCount));
+    }
+
+    @Benchmark
+    public Object readTask() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Task task = randomProject(random).getTaskById(random.nextInt(Dataset.TASKS_PER_PROJECT));
+        return task == null ? null : task.getState();
+    }
+
+    @Benchmark
+    public List<Task> findTasksFirstPage() {
+        return randomProject(ThreadLocalRandom.current()).findTasks(HIGH, 0, 20);
+    }
+
+    @Benchmark
+    public Task setTaskState() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Task task = randomProject(random).getTaskById(random.nextInt(Dataset.TASKS_PER_PROJECT));
+        if (task != null) {
+            task.setState(STATES[random.nextInt(STATES.length)]);
+        }
+        return task;
+    }
+
+    /** Nine reads or queries for every change, as the request mix of the server. */
+    @Benchmark
+    public Object mixed() {
+        int op = ThreadLocalRandom.current().nextInt(10);
+        if (op == 0) {
+            return setTaskState();
+        }
+        return op < 5 ? readTask() : findTasksFirstPage();
+    }
+
+    /**
+     * Runs the benchmarks with each thread count and prints the throughput of each
+     * relative to one thread.
+     *
+     * @param args JMH command line options.
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        List<String> rows = new ArrayList<>();
+        double[] single = null;
+        for (int threads : THREAD_COUNTS) {
+            Options run = new OptionsBuilder()
+                    .parent(options)
+                    .include(ConcurrencyBenchmarks.class.getName())
+                    .threads(threads)
+                    .build();
+            List<RunResult> results = new ArrayList<>(new Runner(run).run());
+            results.sort((a, b) -> label(a).compareTo(label(b)));
+            if (single == null) {
+                single = new double[results.size()];
+                for (int i = 0; i < results.size(); i++) {
+                    single[i] = results.get(i).getPrimaryResult().getScore();
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                RunResult result = results.get(i);
+                double score = result.getPrimaryResult().getScore();
+                rows.add(String.format(Locale.ROOT, "%-40s %3d threads %14.1f ops/ms  x%.2f",
+                        label(result), threads, score, score / single[i]));
+            }
+        }
+        System.out.println();
+        System.out.println("Scaling on " + Runtime.getRuntime().availableProcessors() + " cores:");
+        rows.sort(null);
+        rows.forEach(System.out::println);
+    }
+
+    // the benchmark's name and the size of its data set
+    private static String label(RunResult result) {
+        String name = result.getParams().getBenchmark();
+        return name.substring(name.lastIndexOf('.') + 1) + " [" + result.getParams().getParam("taskCount") + "]";
+    }
+}
@@ -0,0 +1,83 @@
+package bench;
+
+import model.Project;
+import model.ProjectsManager;
+import model.TaskData;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic projects and tasks for the benchmarks, generated from a fixed seed so
+ * every run measures the same data.
+ */
+final class Dataset {
+    static final int TASKS_PER_PROJECT = 1000;
+    static final int ASSIGNEE_COUNT = 200;
+    // a single project holding more tasks than this is not realistic enough to measure
+    static final int MAX_SINGLE_PROJECT_TASKS = 1_000_000;
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    final int taskCount;
+    final ProjectsManager manager = new ProjectsManager();
+    // a project of its own with all the tasks, up to MAX_SINGLE_PROJECT_TASKS
+    final Project bigProject;
+
+    /**
+     * Generates a manager with the tasks spread over projects of
+     * {@value #TASKS_PER_PROJECT} tasks, and one big project.
+     *
+     * @param taskCount The number of tasks in the manager.
+     */
+    Dataset(int taskCount) {
+        this.taskCount = taskCount;
+        Random random = new Random(42);
+
+        int projectCount = Math.max(1, (taskCount + TASKS_PER_PROJECT - 1) / TASKS_PER_PROJECT);
+        Map<String, String> titles = new LinkedHashMap<>();
+        for (int i = 0; i < projectCount; i++) {
+            titles.put(title(i), "Synthetic project " + i);
+        }
+        int left = taskCount;
+        for (Project p : manager.addProjects(titles)) {
+            int n = Math.min(left, TASKS_PER_PROJECT);
+            p.addTasks(tasks(random, n));
+            left -= n;
+        }
+
+        bigProject = Project.restore(-1, "Big project", "All tasks in one project", START, 0);
+        bigProject.addTasks(tasks(random, Math.min(taskCount, MAX_SINGLE_PROJECT_TASKS)));
+    }
+
+    static String title(int i) {
+        return "Project-" + i;
+    }
+
+    static String assignee(int i) {
+        return "user" + i + "@example.com";
+    }
+
+    private static List<TaskData> tasks(Random random, int count) {
+        List<TaskData> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // a third of the tasks is taken, most of them are done or in progress
+            boolean taken = random.nextInt(3) == 0;
+            tasks.add(new TaskData(
+                    "Task " + random.nextInt(5000),
+                    PRIOS[random.nextInt(PRIOS.length)],
+                    STATES[random.nextInt(STATES.length)],
+                    taken ? assignee(random.nextInt(ASSIGNEE_COUNT)) : null,
+                    START.plusDays(random.nextInt(1500))));
+        }
+        return tasks;
+    }
+}
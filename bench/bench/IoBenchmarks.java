@@ -0,0 +1,151 @@
+package bench;
+
+import io.ProjectsFileIO;
+import model.Project;
+import model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of saving and loading projects with {@link ProjectsFileIO}, including
+ * the parallel load with different numbers of cores and the lazy load, against the
+ * plain Java serialization the projects were saved with before. The sizes of both
+ * files are printed when a data set is set up.
+ * <pre>
+ * gradle jmh -Pjmh='IoBenchmarks -p taskCount=1000,100000,1000000 -p parallelism=1,2,4,8'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IoBenchmarks {
+
+    @Param({"1000", "100000", "1000000"})
+    public int taskCount;
+
+    private List<Project> projects;
+    private File file;
+    private File legacyFile;
+
+    @Setup
+    public void save() throws Exception {
+        projects = new Dataset(taskCount).manager.getProjects();
+        file = Files.createTempFile("projects-bench", ".ser").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+        legacyFile = Files.createTempFile("projects-bench-legacy", ".ser").toFile();
+        serializeLegacy(legacyFile, projects);
+        System.out.println("file size: " + file.length() + " bytes, with Java serialization "
+                + legacyFile.length() + " bytes");
+    }
+
+    @TearDown
+    public void delete() throws Exception {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(legacyFile.toPath());
+    }
+
+    // saves as ProjectsFileIO did before it had a format of its own
+    private static void serializeLegacy(File file, List<Project> projects) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new ArrayList<>(projects));
+        }
+    }
+
+    /**
+     * A pool for the parallel save and load, by its parallelism.
+     */
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({"1", "2", "4"})
+        public int parallelism;
+
+        ForkJoinPool pool;
+
+        @Setup
+        public void start() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown
+        public void shutdown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public long serializeToFile() throws Exception {
+        ProjectsFileIO.serializeToFile(file, projects);
+        return file.length();
+    }
+
+    @Benchmark
+    public List<Project> deSerializeFromFile() throws Exception {
+        return ProjectsFileIO.deSerializeFromFile(file);
+    }
+
+    @Benchmark
+    public long serializeToFileLegacy() throws Exception {
+        serializeLegacy(legacyFile, projects);
+        return legacyFile.length();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Project> deSerializeFromFileLegacy() throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(legacyFile))) {
+            return (List<Project>) in.readObject();
+        }
+    }
+
+    @Benchmark
+    public List<Project> deSerializeFromFileMapped() throws Exception {
+        return ProjectsFileIO.deSerializeFromFile(file, true);
+    }
+
+    @Benchmark
+    public long serializeToFileOnPool(Pool pool) throws Exception {
+        ProjectsFileIO.serializeToFile(file, projects, pool.pool);
+        return file.length();
+    }
+
+    @Benchmark
+    public List<Project> deSerializeFromFileOnPool(Pool pool) throws Exception {
+        return ProjectsFileIO.deSerializeFromFile(file, true, pool.pool);
+    }
+
+    @Benchmark
+    public List<Project> deSerializeLazily() throws Exception {
+        return ProjectsFileIO.deSerializeLazily(file);
+    }
+
+    @Benchmark
+    public List<Task> deSerializeLazilyThenTasksOfOneProject() throws Exception {
+        List<Project> loaded = ProjectsFileIO.deSerializeLazily(file);
+        return loaded.get(loaded.size() / 2).getTasks();
+    }
+}
@@ -0,0 +1,291 @@
+package bench;
+
+import model.Project;
+import model.ProjectsManager;
+import model.ProjectsSnapshot;
+import model.ProjectSnapshot;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A stress test of the locking of the model: many threads add, remove and change
+ * projects and tasks at once while others query and snapshot them, and afterwards
+ * every ID must be unique and every index must agree with a plain scan of the data.
+ * Run by {@link Checks}; a failure throws an {@link IllegalStateException}.
+ */
+final class LockStress {
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+    private static final int SHARED_PROJECTS = 4;
+
+    private final int threads;
+    private final int opsPerThread;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * @param threads      The number of writing threads; as many readers run beside them.
+     * @param opsPerThread The number of changes each writer makes in each phase.
+     */
+    LockStress(int threads, int opsPerThread) {
+        this.threads = threads;
+        this.opsPerThread = opsPerThread;
+    }
+
+    void run() throws InterruptedException {
+        projectsPhase();
+        tasksPhase();
+        System.out.println("check: lock stress with " + threads + " writers and " + threads
+                + " readers, " + opsPerThread + " changes each");
+    }
+
+    /**
+     * Adds and removes projects from every writer while readers look them up, then
+     * checks that IDs are unique and the ID and title indexes hold exactly the
+     * projects that were not removed.
+     */
+    private void projectsPhase() throws InterruptedException {
+        ProjectsManager manager = new ProjectsManager();
+        List<Set<Project>> kept = new ArrayList<>();
+        List<Set<Project>> removed = new ArrayList<>();
+        List<Runnable> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Set<Project> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<Project> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+            kept.add(keep);
+            removed.add(gone);
+            writers.add(() -> {
+                for (int i = 0; i < opsPerThread; i++) {
+                    Project p = manager.addProject("Stress " + thread + "-" + i, "");
+                    if (i % 3 == 2) {
+                        manager.removeProject(p);
+                        gone.add(p);
+                    }
+                    else {
+                        keep.add(p);
+                    }
+                }
+            });
+        }
+        runConcurrently(writers, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            manager.getProjectById(random.nextInt(threads * opsPerThread));
+            for (Project p : manager.findProjects("Stress " + random.nextInt(threads) + "-" + random.nextInt(10))) {
+                p.getTitle();
+            }
+            if (random.nextInt(64) == 0) {
+                for (Project p : manager.getProjectsView()) {
+                    p.getId();
+                }
+            }
+        });
+
+        Set<Integer> ids = new HashSet<>();
+        int expected = 0;
+        for (Set<Project> keep : kept) {
+            for (Project p : keep) {
+                check(ids.add(p.getId()), "project id " + p.getId() + " handed out twice");
+                check(manager.getProjectById(p.getId()) == p, "project " + p.getId() + " missing from the id index");
+                check(manager.getProjectByTitle(p.getTitle()) == p, "project " + p.getTitle() + " missing from the title index");
+                expected++;
+            }
+        }
+        for (Set<Project> gone : removed) {
+            for (Project p : gone) {
+                check(ids.add(p.getId()), "project id " + p.getId() + " handed out twice");
+                check(manager.getProjectById(p.getId()) == null, "removed project " + p.getId() + " still in the id index");
+                check(manager.isTitleUnique(p.getTitle()), "removed project " + p.getTitle() + " still in the title index");
+            }
+        }
+        check(manager.getProjects().size() == expected,
+                manager.getProjects().size() + " projects registered, expected " + expected);
+    }
+
+    /**
+     * Adds, changes, claims and removes tasks of a few shared projects from every
+     * writer while readers query and snapshot them, then checks every project's task
+     * IDs, state counts and query results against a scan of its tasks.
+     */
+    private void tasksPhase() throws InterruptedException {
+        ProjectsManager manager = new ProjectsManager();
+        List<Project> shared = new ArrayList<>();
+        for (int i = 0; i < SHARED_PROJECTS; i++) {
+            shared.add(manager.addProject("Shared " + i, ""));
+        }
+        // claims by project and task ID, which are never reused
+        Map<String, AtomicInteger> claims = new ConcurrentHashMap<>();
+        List<Runnable> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String user = Dataset.assignee(t);
+            writers.add(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    Project p = shared.get(random.nextInt(SHARED_PROJECTS));
+                    int op = random.nextInt(10);
+                    if (op < 3) {
+                        p.addTask("Task " + random.nextInt(100), PRIOS[random.nextInt(PRIOS.length)]);
+                        continue;
+                    }
+                    Task task = p.getTaskById(random.nextInt(Math.max(1, p.getNextTaskId())));
+                    if (task == null) {
+                        continue;
+                    }
+                    if (op < 6) {
+                        task.setState(STATES[random.nextInt(STATES.length)]);
+                    }
+                    else if (op < 8) {
+                        if (task.tryClaim(user)) {
+                            claims.computeIfAbsent(p.getId() + "/" + task.getId(), k -> new AtomicInteger()).incrementAndGet();
+                        }
+                    }
+                    else if (op < 9) {
+                        task.setPrio(PRIOS[random.nextInt(PRIOS.length)]);
+                    }
+                    else {
+                        p.removeTaskById(task.getId());
+                    }
+                }
+            });
+        }
+        List<ITaskMatcher> matchers = matchers();
+        runConcurrently(writers, () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Project p = shared.get(random.nextInt(SHARED_PROJECTS));
+            if (random.nextInt(8) == 0) {
+                ProjectsSnapshot snapshot = manager.snapshot();
+                for (ProjectSnapshot ps : snapshot.getProjects()) {
+                    check(ps.getTasks().size() == ps.getTaskCount(), "snapshot of project " + ps.getId()
+                            + " has " + ps.getTasks().size() + " tasks but counts " + ps.getTaskCount());
+                }
+            }
+            else {
+                ITaskMatcher matcher = matchers.get(random.nextInt(matchers.size()));
+                p.findTasks(matcher);
+                p.findTasks(matcher, 0, 20);
+                p.getState();
+                p.getLastUpdated();
+            }
+        });
+
+        for (Map.Entry<String, AtomicInteger> claim : claims.entrySet()) {
+            check(claim.getValue().get() == 1, "task " + claim.getKey() + " claimed "
+                    + claim.getValue().get() + " times");
+        }
+        for (Project p : shared) {
+            checkIndexes(p, matchers);
+        }
+    }
+
+    private static List<ITaskMatcher> matchers() {
+        List<ITaskMatcher> matchers = new ArrayList<>();
+        matchers.add(new NotDoneMatcher());
+        matchers.add(new PrioMatcher(TaskPrio.High));
+        matchers.add(new TakenByMatcher(Dataset.assignee(0)));
+        matchers.add(new AndMatcher(new NotDoneMatcher(), new PrioMatcher(TaskPrio.Low)));
+        return matchers;
+    }
+
+    /**
+     * Checks the task indexes and aggregates of a project against a scan of its tasks.
+     */
+    private static void checkIndexes(Project p, List<ITaskMatcher> matchers) {
+        List<Task> tasks = p.getTasks();
+        Set<Integer> ids = new HashSet<>();
+        int[] stateCounts = new int[STATES.length];
+        for (Task task : tasks) {
+            check(ids.add(task.getId()), "task id " + task.getId() + " twice in project " + p.getId());
+            check(task.getId() < p.getNextTaskId(), "task id " + task.getId() + " not below the next task id");
+            check(p.getTaskById(task.getId()) == task, "task " + task.getId() + " missing from the id index");
+            stateCounts[task.getState() == null ? TaskState.TO_DO.ordinal() : task.getState().ordinal()]++;
+        }
+        check(p.getTaskCount() == tasks.size(), "project " + p.getId() + " counts " + p.getTaskCount()
+                + " tasks but has " + tasks.size());
+        for (TaskState state : STATES) {
+            check(p.getTaskCount(state) == stateCounts[state.ordinal()], "project " + p.getId() + " counts "
+                    + p.getTaskCount(state) + " tasks " + state + " but has " + stateCounts[state.ordinal()]);
+        }
+        for (ITaskMatcher matcher : matchers) {
+            Set<Task> found = Collections.newSetFromMap(new IdentityHashMap<>());
+            found.addAll(p.findTasks(matcher));
+            Set<Task> scanned = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Task task : tasks) {
+                if (matcher.match(task)) {
+                    scanned.add(task);
+                }
+            }
+            check(found.equals(scanned), "project " + p.getId() + " finds " + found.size() + " tasks for "
+                    + matcher.getClass().getSimpleName() + " but a scan matches " + scanned.size());
+        }
+    }
+
+    /**
+     * Runs the writers on threads of their own, and as many threads repeating the
+     * reader until every writer is done. Rethrows the first failure of any thread.
+     */
+    private void runConcurrently(List<Runnable> writers, Runnable reader) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(writers.size());
+        List<Thread> started = new ArrayList<>();
+        for (Runnable writer : writers) {
+            started.add(start(start, () -> {
+                try {
+                    writer.run();
+                } finally {
+                    writing.countDown();
+                }
+            }));
+            started.add(start(start, () -> {
+                while (writing.getCount() > 0 && failure.get() == null) {
+                    reader.run();
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread thread : started) {
+            thread.join();
+        }
+        Throwable failed = failure.get();
+        if (failed != null) {
+            throw new IllegalStateException("Lock stress failed: " + failed, failed);
+        }
+    }
+
+    private Thread start(CountDownLatch start, Runnable work) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+                work.run();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
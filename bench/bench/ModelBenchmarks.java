@@ -0,0 +1,153 @@
+package bench;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.NotMatcher;
+import model.matcher.OrMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the in-memory model: project lookups, task queries with each kind of
+ * matcher, and the project aggregates. The task queries run on the big project of
+ * the data set, which holds all its tasks up to {@value Dataset#MAX_SINGLE_PROJECT_TASKS}.
+ * <pre>
+ * gradle jmh -Pjmh='ModelBenchmarks -p taskCount=1000,100000,1000000,10000000 -jvmArgs -Xmx8g'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmarks {
+
+    @Param({"1000", "100000", "1000000"})
+    public int taskCount;
+
+    private Dataset data;
+    private ProjectsManager manager;
+    private int projectCount;
+    private int counter;
+
+    @Setup
+    public void generate() {
+        data = new Dataset(taskCount);
+        manager = data.manager;
+        projectCount = manager.getProjectsView().size();
+    }
+
+    /**
+     * The matcher of a task query, by name.
+     */
+    @State(Scope.Benchmark)
+    public static class Query {
+        @Param({"NotDone", "PrioHigh", "TakenBy", "NotDoneAndPrioHigh", "TakenByOrTakenBy",
+                "NotNotDone", "TakenByAndCustom", "Custom"})
+        public String matcher;
+
+        ITaskMatcher taskMatcher;
+
+        @Setup
+        public void create() {
+            taskMatcher = matcher(matcher);
+        }
+    }
+
+    static ITaskMatcher matcher(String name) {
+        ITaskMatcher custom = task -> task.getDescription().endsWith("7");
+        switch (name) {
+            case "NotDone": return new NotDoneMatcher();
+            case "PrioHigh": return new PrioMatcher(TaskPrio.High);
+            case "TakenBy": return new TakenByMatcher(Dataset.assignee(3));
+            case "NotDoneAndPrioHigh": return new AndMatcher(new NotDoneMatcher(), new PrioMatcher(TaskPrio.High));
+            case "TakenByOrTakenBy": return new OrMatcher(new TakenByMatcher(Dataset.assignee(3)),
+                    new TakenByMatcher(Dataset.assignee(4)));
+            case "NotNotDone": return new NotMatcher(new NotDoneMatcher());
+            case "TakenByAndCustom": return new AndMatcher(new TakenByMatcher(Dataset.assignee(3)), custom);
+            case "Custom": return custom;
+            default: throw new IllegalArgumentException("Unknown matcher " + name);
+        }
+    }
+
+    @Benchmark
+    public Project addAndRemoveProject() {
+        Project p = manager.addProject("Benchmark project " + counter++, "");
+        manager.removeProject(p);
+        return p;
+    }
+
+    @Benchmark
+    public Project getProjectById() {
+        return manager.getProjectById(ThreadLocalRandom.current().nextInt(projectCount));
+    }
+
+    @Benchmark
+    public List<Project> findProjectsTrigram() {
+        return manager.findProjects(Dataset.title(ThreadLocalRandom.current().nextInt(projectCount)));
+    }
+
+    @Benchmark
+    public List<Project> findProjectsShortScan() {
+        return manager.findProjects("-" + ThreadLocalRandom.current().nextInt(10));
+    }
+
+    @Benchmark
+    public List<Task> findTasks(Query query) {
+        return data.bigProject.findTasks(query.taskMatcher);
+    }
+
+    @Benchmark
+    public List<Task> findTasksFirstPage(Query query) {
+        return data.bigProject.findTasks(query.taskMatcher, 0, 20);
+    }
+
+    @Benchmark
+    public Object getState() {
+        return data.bigProject.getState();
+    }
+
+    @Benchmark
+    public Object getLastUpdated() {
+        return data.bigProject.getLastUpdated();
+    }
+
+    @Benchmark
+    public int getStateOfEveryProject() {
+        int ongoing = 0;
+        for (Project p : manager.getProjectsView()) {
+            ongoing += p.getState().ordinal();
+        }
+        return ongoing;
+    }
+
+    @Benchmark
+    public long getLastUpdatedOfEveryProject() {
+        long days = 0;
+        for (Project p : manager.getProjectsView()) {
+            days += p.getLastUpdated().toEpochDay();
+        }
+        return days;
+    }
+}
@@ -0,0 +1,106 @@
+package bench;
+
+import model.Project;
+import model.ProjectsManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project lookups of {@link ProjectsManager} by ID, by title and by a part of the
+ * title, against the linear scans of the project list the manager did before it kept
+ * indexes. The projects have no tasks, but a million of them still outgrow a small
+ * default heap.
+ * <pre>
+ * gradle jmh -Pjmh='ProjectLookupBenchmarks'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProjectLookupBenchmarks {
+
+    @Param({"1000", "100000", "1000000"})
+    public int projectCount;
+
+    private ProjectsManager manager;
+    // the projects as the manager kept them before, in one list
+    private List<Project> projects;
+
+    @Setup
+    public void generate() {
+        Map<String, String> titles = new LinkedHashMap<>();
+        for (int i = 0; i < projectCount; i++) {
+            titles.put(Dataset.title(i), "Synthetic project " + i);
+        }
+        manager = new ProjectsManager();
+        projects = new ArrayList<>(manager.addProjects(titles));
+    }
+
+    @Benchmark
+    public Project getProjectById() {
+        return manager.getProjectById(ThreadLocalRandom.current().nextInt(projectCount));
+    }
+
+    @Benchmark
+    public Project getProjectByIdScan() {
+        int id = ThreadLocalRandom.current().nextInt(projectCount);
+        for (Project p : projects) {
+            if (p.getId() == id) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public boolean isTitleUnique() {
+        return manager.isTitleUnique(Dataset.title(ThreadLocalRandom.current().nextInt(projectCount)));
+    }
+
+    @Benchmark
+    public boolean isTitleUniqueScan() {
+        String title = Dataset.title(ThreadLocalRandom.current().nextInt(projectCount));
+        for (Project p : projects) {
+            if (p.getTitle().equals(title)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public List<Project> findProjects() {
+        return manager.findProjects(Dataset.title(ThreadLocalRandom.current().nextInt(projectCount)));
+    }
+
+    @Benchmark
+    public List<Project> findProjectsScan() {
+        String query = Dataset.title(ThreadLocalRandom.current().nextInt(projectCount));
+        List<Project> found = new ArrayList<>();
+        for (Project p : projects) {
+            if (p.getTitle().contains(query)) {
+                found.add(p);
+            }
+        }
+        return found;
+    }
+}
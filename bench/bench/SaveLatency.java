@@ -0,0 +1,123 @@
+package bench;
+
+import io.PersistenceScheduler;
+import io.ProjectsFileIO;
+import io.ProjectsJournal;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.Project;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import model.matcher.PrioMatcher;
+
+/**
+ * Measures the latency of foreground operations, changing task states and finding
+ * tasks, first while nothing is saved and then while a {@link PersistenceScheduler}
+ * saves the changes in the background as fast as it can, with the journal on.
+ * <pre>
+ * gradle bench -Pmain=bench.SaveLatency -Pargs='--tasks 1000000 --seconds 20 --threads 2'
+ * </pre>
+ */
+public class SaveLatency {
+
+    private static final TaskState[] STATES = TaskState.values();
+    // keeps query results alive, so the queries are not optimized away
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int taskCount = 1_000_000;
+        int seconds = 20;
+        int threads = 2;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--tasks") && i + 1 < args.length) {
+                taskCount = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--seconds") && i + 1 < args.length) {
+                seconds = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else {
+                System.err.println("Usage: SaveLatency [--tasks 1000000] [--seconds 20] [--threads 2]");
+                System.exit(2);
+            }
+        }
+
+        Dataset data = new Dataset(taskCount);
+        File dir = Files.createTempDirectory("save-latency").toFile();
+        File snapshot = new File(dir, "projects.ser");
+        File journalFile = new File(dir, "projects.journal");
+        ProjectsFileIO.serializeToFile(snapshot, data.manager.getProjects());
+        System.out.println("Java " + Runtime.version() + ", " + taskCount + " tasks, " + threads
+                + " foreground threads, " + seconds + " s per phase");
+
+        // warm up, then measure without saving
+        runForeground(data, threads, Math.max(1, seconds / 4), Metrics.latency("bench.warmup"));
+        Histogram idle = Metrics.latency("bench.foreground.idle");
+        runForeground(data, threads, seconds, idle);
+
+        ProjectsJournal journal = ProjectsJournal.open(snapshot, journalFile, data.manager);
+        // a save starts as soon as one project has changed, so saves run back to back
+        PersistenceScheduler saver = PersistenceScheduler.start(snapshot, journal, data.manager, 100, 1, Long.MAX_VALUE);
+        Histogram saving = Metrics.latency("bench.foreground.saving");
+        runForeground(data, threads, seconds, saving);
+        saver.close();
+        journal.close();
+
+        report("no saves", idle);
+        report("during saves", saving);
+        report("save", Metrics.latency("io.scheduledSave"));
+        Histogram dirty = Metrics.histogram("io.scheduledSave.dirtyProjects");
+        System.out.println(String.format(Locale.ROOT, "%d saves, %.0f changed projects per save, snapshot %d MB",
+                dirty.getCount(), dirty.getCount() == 0 ? 0.0 : (double) dirty.getSum() / dirty.getCount(),
+                snapshot.length() / (1024 * 1024)));
+
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static void runForeground(Dataset data, int threads, int seconds, Histogram latency) throws InterruptedException {
+        int projectCount = data.manager.getProjects().size();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                PrioMatcher high = new PrioMatcher(TaskPrio.High);
+                while (System.nanoTime() < deadline) {
+                    Project project = data.manager.getProjectById(random.nextInt(projectCount));
+                    long start = System.nanoTime();
+                    if (random.nextInt(4) == 0) {
+                        sink = project.findTasks(high, 0, 20);
+                    }
+                    else {
+                        Task task = project.getTaskById(random.nextInt(Dataset.TASKS_PER_PROJECT));
+                        if (task != null) {
+                            task.setState(STATES[random.nextInt(STATES.length)]);
+                        }
+                    }
+                    latency.record(System.nanoTime() - start);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static void report(String name, Histogram h) {
+        System.out.println(String.format(Locale.ROOT,
+                "%-14s %9d ops  p50 %8.3f ms  p99 %8.3f ms  p99.9 %8.3f ms  max %8.3f ms",
+                name, h.getCount(), h.getValueAtQuantile(0.5) / 1e6, h.getValueAtQuantile(0.99) / 1e6,
+                h.getValueAtQuantile(0.999) / 1e6, h.getMax() / 1e6));
+    }
+}
@@ -0,0 +1,170 @@
+package bench;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.Histogram;
+import metrics.Metrics;
+import server.ProjectsServer;
+
+/**
+ * A load generator for the HTTP API: keeps a number of connections busy, each sending
+ * its next request as soon as the previous one is answered, and reports the request
+ * rate and the latency percentiles seen by the clients. Most requests look up tasks,
+ * the rest read a project or claim a task.
+ *
+ * Without {@code --url} a server is started in the same JVM on a synthetic data set,
+ * and its own request latencies are reported as well:
+ * <pre>
+ * gradle bench -Pmain=bench.ServerLoad -Pargs='--connections 10000 --seconds 30'
+ * </pre>
+ * Each connection is a socket on both ends, so the open file limit has to allow
+ * twice the number of connections.
+ */
+public class ServerLoad {
+
+    private static final long WARMUP_NANOS = 5_000_000_000L;
+    // connections are opened in steps, so the server's accept queue is not flooded
+    private static final int CONNECTIONS_PER_STEP = 500;
+    private static final long STEP_MILLIS = 50;
+
+    public static void main(String[] args) throws Exception {
+        int connections = 10_000;
+        int seconds = 30;
+        int taskCount = 100_000;
+        String url = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--connections") && i + 1 < args.length) {
+                connections = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--seconds") && i + 1 < args.length) {
+                seconds = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--tasks") && i + 1 < args.length) {
+                taskCount = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--url") && i + 1 < args.length) {
+                url = args[++i];
+            }
+            else {
+                System.err.println("Usage: ServerLoad [--connections 10000] [--seconds 30] [--tasks 100000] [--url http://host:port]");
+                System.exit(2);
+            }
+        }
+
+        ProjectsServer server = null;
+        int projectCount;
+        if (url == null) {
+            Dataset data = new Dataset(taskCount);
+            server = ProjectsServer.start(data.manager, new InetSocketAddress("127.0.0.1", 0));
+            url = "http://127.0.0.1:" + server.getPort();
+            projectCount = data.manager.getProjects().size();
+        }
+        else {
+            projectCount = Math.max(1, taskCount / Dataset.TASKS_PER_PROJECT);
+        }
+        System.out.println("Java " + Runtime.version() + ", " + connections + " connections for "
+                + seconds + " s against " + url);
+
+        Histogram latency = Metrics.latency("load.requests");
+        LongAdder errors = new LongAdder();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long start = System.nanoTime();
+        long deadline = start + WARMUP_NANOS + seconds * 1_000_000_000L;
+        CountDownLatch finished = new CountDownLatch(connections);
+        Load load = new Load(client, url, projectCount, deadline, latency, errors, finished);
+        for (int i = 0; i < connections; i++) {
+            if (i > 0 && i % CONNECTIONS_PER_STEP == 0) {
+                Thread.sleep(STEP_MILLIS);
+            }
+            load.next();
+        }
+
+        Thread.sleep(Math.max(0, (start + WARMUP_NANOS - System.nanoTime()) / 1_000_000));
+        Metrics.reset();
+        long measuredFrom = System.nanoTime();
+        finished.await();
+        double measuredSeconds = (System.nanoTime() - measuredFrom) / 1e9;
+
+        System.out.println(String.format(Locale.ROOT, "%d requests, %.0f/s, %d errors",
+                latency.getCount(), latency.getCount() / measuredSeconds, errors.sum()));
+        report("client latency", latency);
+        if (server != null) {
+            report("server latency", Metrics.latency("server.requests"));
+            server.close();
+        }
+    }
+
+    private static void report(String name, Histogram h) {
+        System.out.println(String.format(Locale.ROOT, "%-16s p50 %.2f ms  p99 %.2f ms  p99.9 %.2f ms  max %.2f ms",
+                name, h.getValueAtQuantile(0.5) / 1e6, h.getValueAtQuantile(0.99) / 1e6,
+                h.getValueAtQuantile(0.999) / 1e6, h.getMax() / 1e6));
+    }
+
+    /** The requests of all connections; each completed request starts the next. */
+    private static final class Load {
+        private final HttpClient client;
+        private final String url;
+        private final int projectCount;
+        private final long deadline;
+        private final Histogram latency;
+        private final LongAdder errors;
+        private final CountDownLatch finished;
+
+        Load(HttpClient client, String url, int projectCount, long deadline,
+             Histogram latency, LongAdder errors, CountDownLatch finished) {
+            this.client = client;
+            this.url = url;
+            this.projectCount = projectCount;
+            this.deadline = deadline;
+            this.latency = latency;
+            this.errors = errors;
+            this.finished = finished;
+        }
+
+        void next() {
+            if (System.nanoTime() >= deadline) {
+                finished.countDown();
+                return;
+            }
+            HttpRequest request = request(ThreadLocalRandom.current());
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                // a lost claim is answered with 409, which is a normal answer
+                if (failure != null || (response.statusCode() >= 400 && response.statusCode() != 409)) {
+                    errors.increment();
+                }
+                else {
+                    latency.record(System.nanoTime() - sent);
+                }
+                next();
+            });
+        }
+
+        private HttpRequest request(ThreadLocalRandom random) {
+            int project = random.nextInt(projectCount);
+            int kind = random.nextInt(100);
+            if (kind < 80) {
+                return HttpRequest.newBuilder(URI.create(url + "/projects/" + project
+                        + "/tasks?prio=High&notDone=true&limit=20")).build();
+            }
+            if (kind < 95) {
+                return HttpRequest.newBuilder(URI.create(url + "/projects/" + project)).build();
+            }
+            int task = random.nextInt(Dataset.TASKS_PER_PROJECT);
+            return HttpRequest.newBuilder(URI.create(url + "/projects/" + project + "/tasks/" + task + "/claim"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"takenBy\":\"load" + random.nextInt(100) + "\"}"))
+                    .build();
+        }
+    }
+}
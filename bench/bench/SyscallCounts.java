@@ -0,0 +1,111 @@
+package bench;
+
+import io.ProjectsFileIO;
+import model.Project;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counts the read and write system calls of saving and loading projects, with
+ * {@link ProjectsFileIO} and with the unbuffered Java serialization it used before,
+ * from the counters the Linux kernel keeps for the process in {@code /proc/self/io}.
+ * Each operation runs once unmeasured first, so loading classes does not count.
+ * <pre>
+ * gradle bench -Pmain=bench.SyscallCounts -Pargs='1000,100000,1000000'
+ * </pre>
+ */
+public class SyscallCounts {
+
+    private static final Path PROC_IO = Path.of("/proc/self/io");
+    private static final String DEFAULT_SIZES = "1000,100000";
+
+    // keeps the loaded projects, so loading them is not optimized away
+    private static volatile Object sink;
+
+    /** An operation on the saved file. */
+    private interface FileOperation {
+        Object run(File file) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!Files.isReadable(PROC_IO)) {
+            System.err.println("Needs the system call counters of Linux in " + PROC_IO);
+            System.exit(2);
+        }
+        String sizes = args.length > 0 ? args[0] : DEFAULT_SIZES;
+        for (String size : sizes.split(",")) {
+            int taskCount = Integer.parseInt(size.trim());
+            List<Project> projects = new Dataset(taskCount).manager.getProjects();
+            File file = Files.createTempFile("projects-syscalls", ".ser").toFile();
+            File legacyFile = Files.createTempFile("projects-syscalls-legacy", ".ser").toFile();
+            try {
+                System.out.println();
+                System.out.println("== " + taskCount + " tasks ==");
+                count("save, Java serialization", legacyFile, f -> {
+                    serializeLegacy(f, projects);
+                    return null;
+                });
+                count("save", file, f -> {
+                    ProjectsFileIO.serializeToFile(f, projects);
+                    return null;
+                });
+                count("load, Java serialization", legacyFile, SyscallCounts::deSerializeLegacy);
+                count("load", file, ProjectsFileIO::deSerializeFromFile);
+                count("load, mapped", file, f -> ProjectsFileIO.deSerializeFromFile(f, true));
+                count("load lazily", file, ProjectsFileIO::deSerializeLazily);
+            } finally {
+                Files.deleteIfExists(file.toPath());
+                Files.deleteIfExists(legacyFile.toPath());
+            }
+        }
+    }
+
+    private static void count(String name, File file, FileOperation operation) throws Exception {
+        operation.run(file);
+        long[] before = readCounters();
+        long start = System.nanoTime();
+        sink = operation.run(file);
+        long nanos = System.nanoTime() - start;
+        long[] after = readCounters();
+        System.out.println(String.format(Locale.ROOT, "%-28s %10d reads %10d writes %10.1f ms  %12d bytes",
+                name, after[0] - before[0], after[1] - before[1], nanos / 1e6, file.length()));
+    }
+
+    // the numbers of read and write system calls of the process so far
+    private static long[] readCounters() throws IOException {
+        long[] counters = new long[2];
+        for (String line : Files.readAllLines(PROC_IO)) {
+            if (line.startsWith("syscr:")) {
+                counters[0] = Long.parseLong(line.substring(6).trim());
+            }
+            else if (line.startsWith("syscw:")) {
+                counters[1] = Long.parseLong(line.substring(6).trim());
+            }
+        }
+        return counters;
+    }
+
+    // saves as ProjectsFileIO did before it had a format of its own
+    private static void serializeLegacy(File file, List<Project> projects) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new ArrayList<>(projects));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Project> deSerializeLegacy(File file) throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            return (List<Project>) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package bench;
+
+import model.Project;
+import model.Task;
+import model.TaskData;
+import model.TaskPrio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updating and removing tasks by ID in a project of 100k tasks with the task ID index,
+ * against finding them by scanning the task list and removing them from it, as the
+ * project and the UI did before.
+ * <pre>
+ * gradle jmh -Pjmh='TaskByIdBenchmarks'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskByIdBenchmarks {
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+
+    @Param({"100000"})
+    public int taskCount;
+
+    private Project project;
+    // the tasks as the project kept them before, in one list
+    private List<Task> tasks;
+
+    @Setup
+    public void generate() {
+        project = Project.restore(0, "Benchmark", "", LocalDate.of(2020, 1, 1), 0);
+        List<TaskData> data = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            data.add(new TaskData("Task " + i, PRIOS[i % PRIOS.length]));
+        }
+        tasks = new ArrayList<>(project.addTasks(data));
+    }
+
+    @Benchmark
+    public Task updateById() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Task task = project.getTaskById(random.nextInt(taskCount));
+        task.setPrio(PRIOS[random.nextInt(PRIOS.length)]);
+        return task;
+    }
+
+    @Benchmark
+    public Task updateByIdScan() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = random.nextInt(taskCount);
+        for (Task task : tasks) {
+            if (task.getId() == id) {
+                task.setPrio(PRIOS[random.nextInt(PRIOS.length)]);
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /** Removes a task by its ID and restores it, so the project keeps its size. */
+    @Benchmark
+    public boolean removeById() {
+        int id = ThreadLocalRandom.current().nextInt(taskCount);
+        Task task = project.getTaskById(id);
+        boolean removed = project.removeTaskById(id);
+        project.restoreTask(id, task.getDescription(), task.getPrio(), task.getState(),
+                task.getTakenBy(), task.getLastUpdate());
+        return removed;
+    }
+
+    /** Finds a task by scanning the list, removes it from the list and appends it again. */
+    @Benchmark
+    public boolean removeByIdScan() {
+        int id = ThreadLocalRandom.current().nextInt(taskCount);
+        for (Task task : tasks) {
+            if (task.getId() == id) {
+                boolean removed = tasks.remove(task);
+                tasks.add(task);
+                return removed;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,116 @@
+package bench;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterating the projects and the tasks of a project through the copying getters
+ * against the read-only views. Run through {@link #main} to measure with the GC
+ * profiler and print the bytes allocated per iteration:
+ * <pre>
+ * gradle bench -Pmain=bench.ViewBenchmarks -Pargs='-p taskCount=1000,100000,1000000'
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewBenchmarks {
+
+    @Param({"1000", "100000"})
+    public int taskCount;
+
+    private ProjectsManager manager;
+    private Project project;
+
+    @Setup
+    public void generate() {
+        Dataset data = new Dataset(taskCount);
+        manager = data.manager;
+        project = data.bigProject;
+    }
+
+    @Benchmark
+    public int projectsCopy() {
+        int sum = 0;
+        for (Project p : manager.getProjects()) {
+            sum += p.getId();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int projectsView() {
+        int sum = 0;
+        for (Project p : manager.getProjectsView()) {
+            sum += p.getId();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int tasksCopy() {
+        int sum = 0;
+        for (Task t : project.getTasks()) {
+            sum += t.getId();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int tasksView() {
+        int sum = 0;
+        for (Task t : project.getTasksView()) {
+            sum += t.getId();
+        }
+        return sum;
+    }
+
+    /**
+     * Runs the benchmarks with the GC profiler and prints the time and the bytes
+     * allocated per operation of each.
+     *
+     * @param args JMH command line options.
+     */
+    public static void main(String[] args) throws Exception {
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(new CommandLineOptions(args))
+                .include(ViewBenchmarks.class.getName())
+                .addProfiler(GCProfiler.class);
+        List<String> rows = new ArrayList<>();
+        for (RunResult result : new Runner(options.build()).run()) {
+            String name = result.getParams().getBenchmark();
+            Result<?> bytes = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            rows.add(String.format(Locale.ROOT, "%-16s [%8s tasks] %12.1f us/op %14.0f bytes/op",
+                    name.substring(name.lastIndexOf('.') + 1), result.getParams().getParam("taskCount"),
+                    result.getPrimaryResult().getScore(), bytes == null ? Double.NaN : bytes.getScore()));
+        }
+        System.out.println();
+        rows.forEach(System.out::println);
+    }
+}
@@ -0,0 +1,84 @@
+package io;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * An output stream that collects bytes in a large direct buffer and writes the buffer
+ * to a file channel in one call when it is full, keeping a CRC-32C of everything written.
+ */
+class ChannelOutputStream extends OutputStream {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private long count;
+
+    ChannelOutputStream(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    /**
+     * Gets the CRC-32C of all bytes written so far, including buffered ones.
+     */
+    long getCrc() throws IOException {
+        drain();
+        return crc.getValue();
+    }
+
+    /**
+     * Gets the number of bytes written so far, including buffered ones.
+     */
+    long getCount() {
+        return count + buffer.position();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        count += buffer.remaining();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered bytes. The channel is left open for the owner to close.
+     */
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+}
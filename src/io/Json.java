@@ -0,0 +1,178 @@
+package io;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for flat objects whose values are strings, numbers, booleans or
+ * null, as used by the JSON-lines import and export.
+ */
+public final class Json {
+
+    /**
+     * Writes a string as a JSON string literal.
+     *
+     * @param s The string, or null.
+     * @return The quoted and escaped string, or {@code null}.
+     */
+    public static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Parses a flat JSON object.
+     *
+     * @param text The JSON text.
+     * @return The members in the order they appear; strings unquoted, numbers and
+     *         booleans as written, and null for null.
+     * @throws IOException if the text is not a flat JSON object.
+     */
+    public static Map<String, String> parseObject(String text) throws IOException {
+        return new Parser(text).object();
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() throws IOException {
+            Map<String, String> members = new LinkedHashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            }
+            else {
+                while (true) {
+                    String key = string();
+                    expect(':');
+                    members.put(key, value());
+                    char c = next();
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("',' or '}' expected");
+                    }
+                }
+            }
+            if (peek() != 0) {
+                throw error("Unexpected text after the object");
+            }
+            return members;
+        }
+
+        private String value() throws IOException {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested values are not supported");
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.isEmpty()) {
+                throw error("Value expected");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() throws IOException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Bad unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+        }
+
+        private void expect(char c) throws IOException {
+            if (next() != c) {
+                throw error("'" + c + "' expected");
+            }
+        }
+
+        // the next character that is not white space, or 0 at the end
+        private char next() {
+            char c = peek();
+            if (c != 0) {
+                pos++;
+            }
+            return c;
+        }
+
+        private char peek() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at column " + (pos + 1));
+        }
+    }
+
+    private Json() {}
+}
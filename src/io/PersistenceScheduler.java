@@ -0,0 +1,263 @@
+package io;
+import metrics.Histogram;
+import metrics.Metrics;
+import model.IProjectsListener;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Saves the projects of a manager in the background, so neither the UI nor the
+ * server waits for a save.
+ *
+ * The scheduler listens to the manager and notes which projects changed; many changes
+ * to one project count once. A snapshot with every change so far is written in one
+ * go on a background thread when the oldest unsaved change is {@code intervalMillis}
+ * old, as soon as {@code maxDirtyProjects} projects have changed, or when the journal
+ * passes {@code maxJournalBytes}. The projects are saved from a
+ * {@link ProjectsManager#snapshot()}, so writers carry on while they are saved. With
+ * a {@link ProjectsJournal} the snapshot is written by compacting the journal, which
+ * keeps every change durable in the meantime; the journal also holds back writers
+ * when its disk falls behind. Projects whose tasks were loaded lazily and did not
+ * change are copied into the snapshot as they are, so a save costs little more than
+ * the changed projects.
+ *
+ * {@link #close()} writes the last changes before the application exits.
+ */
+public class PersistenceScheduler implements IProjectsListener, Closeable {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 60_000;
+    public static final int DEFAULT_MAX_DIRTY_PROJECTS = 1000;
+    public static final long DEFAULT_MAX_JOURNAL_BYTES = 4 * 1024 * 1024;
+    // how often the interval and the journal size are checked
+    private static final long CHECK_MILLIS = 1000;
+
+    private static final Histogram SAVE_LATENCY = Metrics.latency("io.scheduledSave");
+    private static final Histogram SAVED_DIRTY_PROJECTS = Metrics.histogram("io.scheduledSave.dirtyProjects");
+
+    private final File snapshotFile;
+    private final ProjectsJournal journal;
+    private final ProjectsManager manager;
+    private final long intervalMillis;
+    private final int maxDirtyProjects;
+    private final long maxJournalBytes;
+    private final ScheduledExecutorService background;
+    private final AtomicBoolean saveRequested = new AtomicBoolean();
+
+    // the IDs of the projects changed since the last save
+    private final Set<Integer> dirtyProjects = ConcurrentHashMap.newKeySet();
+    // when the oldest unsaved change was made, or 0 if there is none
+    private volatile long dirtySince;
+    // one save at a time
+    private final Object saveLock = new Object();
+
+    private PersistenceScheduler(File snapshotFile, ProjectsJournal journal, ProjectsManager manager,
+                                 long intervalMillis, int maxDirtyProjects, long maxJournalBytes) {
+        this.snapshotFile = snapshotFile;
+        this.journal = journal;
+        this.manager = manager;
+        this.intervalMillis = intervalMillis;
+        this.maxDirtyProjects = maxDirtyProjects;
+        this.maxJournalBytes = maxJournalBytes;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "projects-saver");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts saving a manager's changes with the default interval and limits.
+     *
+     * @param snapshotFile The file to save the projects in.
+     * @param journal      The journal of the manager, or null to write the file directly.
+     * @param manager      The manager.
+     * @return The running scheduler.
+     */
+    public static PersistenceScheduler start(File snapshotFile, ProjectsJournal journal, ProjectsManager manager) {
+        return start(snapshotFile, journal, manager,
+                DEFAULT_INTERVAL_MILLIS, DEFAULT_MAX_DIRTY_PROJECTS, DEFAULT_MAX_JOURNAL_BYTES);
+    }
+
+    /**
+     * Starts saving a manager's changes.
+     *
+     * @param snapshotFile     The file to save the projects in.
+     * @param journal          The journal of the manager, or null to write the file directly.
+     * @param manager          The manager.
+     * @param intervalMillis   The longest a change waits to be saved.
+     * @param maxDirtyProjects The number of changed projects that starts a save at once.
+     * @param maxJournalBytes  The journal size that starts a save at once.
+     * @return The running scheduler.
+     */
+    public static PersistenceScheduler start(File snapshotFile, ProjectsJournal journal, ProjectsManager manager,
+                                             long intervalMillis, int maxDirtyProjects, long maxJournalBytes) {
+        PersistenceScheduler scheduler = new PersistenceScheduler(snapshotFile, journal, manager,
+                intervalMillis, maxDirtyProjects, maxJournalBytes);
+        manager.addListener(scheduler);
+        long check = Math.min(CHECK_MILLIS, intervalMillis);
+        scheduler.background.scheduleWithFixedDelay(scheduler::saveIfDue, check, check, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    @Override
+    public void projectAdded(Project project) {
+        changed(project);
+    }
+
+    @Override
+    public void projectChanged(Project project) {
+        changed(project);
+    }
+
+    @Override
+    public void projectRemoved(Project project) {
+        changed(project);
+    }
+
+    @Override
+    public void taskAdded(Project project, Task task) {
+        changed(project);
+    }
+
+    @Override
+    public void taskChanged(Project project, Task task) {
+        changed(project);
+    }
+
+    @Override
+    public void taskRemoved(Project project, Task task) {
+        changed(project);
+    }
+
+    /**
+     * Gets the number of projects changed since the last save.
+     *
+     * @return The number of changed projects.
+     */
+    public int getDirtyProjectCount() {
+        return dirtyProjects.size();
+    }
+
+    /**
+     * Saves every change so far on the calling thread, unless there is none.
+     */
+    public void saveNow() throws IOException {
+        save(false);
+    }
+
+    /**
+     * Saves every change so far.
+     *
+     * @param always true to save even if no project changed, to compact a journal
+     *               replayed at startup.
+     */
+    private void save(boolean always) throws IOException {
+        synchronized (saveLock) {
+            saveRequested.set(false);
+            if (dirtyProjects.isEmpty() && !always) {
+                dirtySince = 0;
+                return;
+            }
+            long start = Metrics.start();
+            // changes made from here on are noted again and go into the next save
+            dirtySince = 0;
+            List<Integer> saving = new ArrayList<>(dirtyProjects.size());
+            for (Iterator<Integer> it = dirtyProjects.iterator(); it.hasNext(); ) {
+                saving.add(it.next());
+                it.remove();
+            }
+            try {
+                if (journal != null) {
+                    journal.compact();
+                }
+                else {
+                    ProjectsFileIO.serializeToFile(snapshotFile, manager.snapshot());
+                }
+            } catch (IOException | RuntimeException e) {
+                dirtyProjects.addAll(saving);
+                if (dirtySince == 0) {
+                    dirtySince = System.nanoTime();
+                }
+                throw e;
+            }
+            SAVED_DIRTY_PROJECTS.recordIfEnabled(saving.size());
+            SAVE_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Stops saving in the background and saves the last changes.
+     */
+    @Override
+    public void close() throws IOException {
+        manager.removeListener(this);
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveNow();
+    }
+
+    /**
+     * Notes a change, and asks for a save at once when many projects have changed.
+     * Called with the project's lock held, so it only updates the bookkeeping.
+     */
+    private void changed(Project project) {
+        if (dirtyProjects.add(project.getId())) {
+            if (dirtySince == 0) {
+                dirtySince = System.nanoTime();
+            }
+            if (dirtyProjects.size() >= maxDirtyProjects && saveRequested.compareAndSet(false, true)) {
+                try {
+                    background.execute(this::saveQuietly);
+                } catch (RejectedExecutionException e) {
+                    // closing, a change still being reported is saved by close()
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves if a change has waited long enough or the journal has grown too large.
+     * Runs on the schedule, which an exception would cancel, so every failure is
+     * reported and the changes are tried again on the next check.
+     */
+    private void saveIfDue() {
+        try {
+            long since = dirtySince;
+            if (journal != null && journal.getSize() >= maxJournalBytes) {
+                save(true);
+            }
+            else if (since != 0 && System.nanoTime() - since >= TimeUnit.MILLISECONDS.toNanos(intervalMillis)) {
+                save(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not save the projects: " + e);
+        }
+    }
+
+    private void saveQuietly() {
+        try {
+            saveNow();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not save the projects: " + e);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package io;
+import model.ITaskSource;
+import model.Project;
+import model.ProjectSnapshot;
+import model.ProjectsSnapshot;
+import model.StringDictionary;
+import model.TaskPrio;
+import model.TaskSnapshot;
+import model.TaskState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+
+/**
+ * A compact, versioned binary format for lists of projects.
+ *
+ * Layout: the magic number and a format version, then one segment per project with
+ * its tasks, then an index with the attributes of every project and the position,
+ * length and CRC-32C of its segment, and last the CRC-32C and position of the index.
+ * The index can be read on its own, so the tasks of a project can be decoded only
+ * when they are needed. Integers are written as variable-length varints, enums as
+ * ordinals, dates as epoch days, and assignees through a string table so each
+ * distinct name is written only once per segment.
+ */
+public class ProjectsCodec {
+
+    /** The first four bytes of a file in this format, "PMGR". */
+    public static final int MAGIC = 0x504D4752;
+    public static final int VERSION = 2;
+
+    // the magic number and the version
+    private static final int HEADER_SIZE = 5;
+    // the CRC-32C and the position of the index
+    private static final int TRAILER_SIZE = 12;
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+
+    /**
+     * Writes the projects, with their tasks, in the binary format. The segment of a
+     * project whose tasks are unchanged since they were read from a file in this
+     * format is copied without decoding it. Segments are encoded in parallel on the
+     * common fork-join pool.
+     */
+    public static void write(DataOutput out, List<Project> projects) throws IOException {
+        write(out, projects, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Writes the projects in the binary format, encoding the segments of consecutive
+     * ranges of projects in parallel on a pool. Ranges are written in order as they are
+     * done, with only a few more in progress, so the whole file is never held in memory.
+     * Each project is written as one {@link Project#snapshot() version}, taken when its
+     * range is encoded, so no project is written half changed.
+     *
+     * @param pool The pool to encode on.
+     */
+    public static void write(DataOutput out, List<Project> projects, ForkJoinPool pool) throws IOException {
+        writeVersions(out, new AbstractList<ProjectSnapshot>() {
+            @Override
+            public ProjectSnapshot get(int index) {
+                return projects.get(index).snapshot();
+            }
+
+            @Override
+            public int size() {
+                return projects.size();
+            }
+        }, pool);
+    }
+
+    /**
+     * Writes the projects of a snapshot in the binary format, as they were when it was
+     * taken, on the common fork-join pool.
+     */
+    public static void write(DataOutput out, ProjectsSnapshot snapshot) throws IOException {
+        write(out, snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Writes the projects of a snapshot in the binary format, encoding ranges of
+     * projects in parallel on a pool. The snapshot is immutable, so nothing is locked.
+     *
+     * @param pool The pool to encode on.
+     */
+    public static void write(DataOutput out, ProjectsSnapshot snapshot, ForkJoinPool pool) throws IOException {
+        writeVersions(out, snapshot.getProjects(), pool);
+    }
+
+    private static void writeVersions(DataOutput out, List<ProjectSnapshot> projects, ForkJoinPool pool) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(index);
+        writeVarInt(indexOut, projects.size());
+        long offset = HEADER_SIZE;
+
+        int partitionSize = partitionSize(projects.size(), pool);
+        int maxInFlight = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<List<EncodedSegment>>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        while (next < projects.size() || !inFlight.isEmpty()) {
+            while (next < projects.size() && inFlight.size() < maxInFlight) {
+                List<ProjectSnapshot> partition = projects.subList(next, Math.min(next + partitionSize, projects.size()));
+                inFlight.add(pool.submit(() -> encodeSegments(partition)));
+                next += partition.size();
+            }
+            for (EncodedSegment segment : join(inFlight.poll())) {
+                ProjectSnapshot p = segment.project;
+                out.write(segment.bytes);
+
+                writeSignedVarInt(indexOut, p.getId());
+                writeString(indexOut, p.getTitle());
+                writeString(indexOut, p.getDescr());
+                writeDate(indexOut, p.getCreated());
+                writeSignedVarInt(indexOut, p.getNextTaskId());
+                for (int count : segment.stateCounts) {
+                    writeVarInt(indexOut, count);
+                }
+                writeDate(indexOut, segment.latestTaskUpdate);
+                writeVarLong(indexOut, offset);
+                writeVarInt(indexOut, segment.bytes.length);
+                indexOut.writeInt(segment.crc);
+                offset += segment.bytes.length;
+            }
+        }
+
+        byte[] indexBytes = index.toByteArray();
+        CRC32C indexCrc = new CRC32C();
+        indexCrc.update(indexBytes);
+        out.write(indexBytes);
+        out.writeInt((int) indexCrc.getValue());
+        out.writeLong(offset);
+    }
+
+    /**
+     * A project's segment, encoded and ready to be written.
+     */
+    private static final class EncodedSegment {
+        final ProjectSnapshot project;
+        final byte[] bytes;
+        final int crc;
+        final int[] stateCounts;
+        final LocalDate latestTaskUpdate;
+
+        EncodedSegment(ProjectSnapshot project, byte[] bytes, int[] stateCounts, LocalDate latestTaskUpdate) {
+            CRC32C crc = new CRC32C();
+            crc.update(bytes);
+            this.project = project;
+            this.bytes = bytes;
+            this.crc = (int) crc.getValue();
+            this.stateCounts = stateCounts;
+            this.latestTaskUpdate = latestTaskUpdate;
+        }
+    }
+
+    private static List<EncodedSegment> encodeSegments(List<ProjectSnapshot> partition) {
+        List<EncodedSegment> encoded = new ArrayList<>(partition.size());
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        for (ProjectSnapshot p : partition) {
+            segment.reset();
+            ITaskSource source = p.getTaskSource();
+            if (source instanceof TaskSegment) {
+                ((TaskSegment) source).copyTo(segment);
+            }
+            else {
+                try {
+                    writeTasks(new DataOutputStream(segment), p.getTasks());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // cannot happen, the stream is in memory
+                }
+            }
+            int[] stateCounts = new int[STATES.length];
+            for (TaskState state : STATES) {
+                stateCounts[state.ordinal()] = p.getTaskCount(state);
+            }
+            encoded.add(new EncodedSegment(p, segment.toByteArray(), stateCounts, p.getLatestTaskUpdate()));
+        }
+        return encoded;
+    }
+
+    /**
+     * Reads projects, with their tasks, written by {@link #write}. The segments are
+     * decoded in parallel on the common fork-join pool.
+     *
+     * @throws IOException if the data is not in this format or has an unknown version.
+     */
+    public static List<Project> read(ByteBuffer data) throws IOException {
+        return read(data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads projects, with their tasks, written by {@link #write}, decoding the segments
+     * of consecutive ranges of projects in parallel on a pool. The projects are returned
+     * in the order they were written.
+     *
+     * @param pool The pool to decode on.
+     * @throws IOException if the data is not in this format or has an unknown version.
+     */
+    public static List<Project> read(ByteBuffer data, ForkJoinPool pool) throws IOException {
+        readVersion(data);
+        List<TaskSegment> segments = readIndex(data, null);
+        Project[] projects = new Project[segments.size()];
+        int partitionSize = partitionSize(segments.size(), pool);
+        List<ForkJoinTask<?>> partitions = new ArrayList<>();
+        for (int start = 0; start < segments.size(); start += partitionSize) {
+            int from = start;
+            int to = Math.min(start + partitionSize, segments.size());
+            partitions.add(pool.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    Project p = segments.get(i).restoreProject(false);
+                    try {
+                        segments.get(i).loadTasks(p);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    projects[i] = p;
+                }
+            }));
+        }
+        for (ForkJoinTask<?> partition : partitions) {
+            join(partition);
+        }
+        return new ArrayList<>(Arrays.asList(projects));
+    }
+
+    /**
+     * Splits a number of projects into a few ranges per worker of the pool, so uneven
+     * ranges even out.
+     */
+    private static int partitionSize(int projectCount, ForkJoinPool pool) {
+        int partitions = pool.getParallelism() * 4;
+        return Math.max(1, (projectCount + partitions - 1) / partitions);
+    }
+
+    /**
+     * Waits for a task on the pool and rethrows an I/O error it failed with.
+     */
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads the projects written by {@link #write} without their tasks, which are
+     * decoded from the data when each project's tasks are first used. The data must
+     * not change while the projects are in use.
+     *
+     * @param cache Evicts the tasks of rarely used projects again.
+     * @throws IOException if the data is not in this format or has an unknown version.
+     */
+    static List<Project> readLazily(ByteBuffer data, TaskSegmentCache cache) throws IOException {
+        readVersion(data);
+        List<Project> projects = new ArrayList<>();
+        for (TaskSegment segment : readIndex(data, cache)) {
+            projects.add(segment.restoreProject(true));
+        }
+        return projects;
+    }
+
+    private static void readVersion(ByteBuffer data) throws IOException {
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a projects file");
+        }
+        int version = data.get(4) & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported projects file version " + version);
+        }
+    }
+
+    /**
+     * Reads the index of the data after checking its CRC.
+     */
+    private static List<TaskSegment> readIndex(ByteBuffer data, TaskSegmentCache cache) throws IOException {
+        int trailer = data.limit() - TRAILER_SIZE;
+        if (trailer < HEADER_SIZE) {
+            throw new IOException("Corrupt projects file: no index");
+        }
+        long indexOffset = data.getLong(trailer + 4);
+        if (indexOffset < HEADER_SIZE || indexOffset > trailer) {
+            throw new IOException("Corrupt projects file: index at " + indexOffset);
+        }
+        ByteBuffer index = data.slice((int) indexOffset, trailer - (int) indexOffset);
+        CRC32C crc = new CRC32C();
+        crc.update(index.duplicate());
+        if ((int) crc.getValue() != data.getInt(trailer)) {
+            throw new IOException("Corrupt projects file: index checksum mismatch");
+        }
+
+        DataInput in = new DataInputStream(new ByteBufferInputStream(index));
+        int projectCount = readVarInt(in);
+        List<TaskSegment> segments = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            int id = readSignedVarInt(in);
+            String title = readString(in);
+            String descr = readString(in);
+            LocalDate created = readDate(in);
+            int nextTaskId = readSignedVarInt(in);
+            int[] stateCounts = new int[STATES.length];
+            for (int j = 0; j < stateCounts.length; j++) {
+                stateCounts[j] = readVarInt(in);
+            }
+            LocalDate latestTaskUpdate = readDate(in);
+            long offset = readVarLong(in);
+            int length = readVarInt(in);
+            int segmentCrc = in.readInt();
+            if (offset < HEADER_SIZE || length < 0 || offset + length > indexOffset) {
+                throw new IOException("Corrupt projects file: segment of project " + id + " out of bounds");
+            }
+            segments.add(new TaskSegment(id, title, descr, created, nextTaskId, stateCounts, latestTaskUpdate,
+                    data.slice((int) offset, length), segmentCrc, cache));
+        }
+        return segments;
+    }
+
+    /**
+     * Writes the number of tasks and each task, with a string table of its own.
+     */
+    private static void writeTasks(DataOutput out, List<TaskSnapshot> tasks) throws IOException {
+        Map<String, Integer> assignees = new HashMap<>();
+        writeVarInt(out, tasks.size());
+        for (TaskSnapshot t : tasks) {
+            writeSignedVarInt(out, t.getId());
+            writeString(out, t.getDescription());
+            out.writeByte(t.getPrio() == null ? 0 : t.getPrio().ordinal() + 1);
+            out.writeByte(t.getState() == null ? 0 : t.getState().ordinal() + 1);
+            writeAssignee(out, t.getTakenBy(), assignees);
+            writeDate(out, t.getLastUpdate());
+        }
+    }
+
+    /**
+     * Reads tasks written by {@link #writeTasks} and adds them to the project.
+     */
+    static void readTasks(DataInput in, Project p, List<String> assignees) throws IOException {
+        int taskCount = readVarInt(in);
+        for (int j = 0; j < taskCount; j++) {
+            int taskId = readSignedVarInt(in);
+            String description = readString(in);
+            int prio = in.readUnsignedByte();
+            int state = in.readUnsignedByte();
+            String takenBy = readAssignee(in, assignees);
+            LocalDate lastUpdate = readDate(in);
+            p.restoreTask(taskId, description, prio == 0 ? null : PRIOS[prio - 1],
+                    state == 0 ? null : STATES[state - 1], takenBy, lastUpdate);
+        }
+    }
+
+    /**
+     * Writes an assignee as its position in the string table, adding it on first use.
+     * 0 means no assignee; a code one past the end of the table is followed by the new name.
+     */
+    private static void writeAssignee(DataOutput out, String takenBy, Map<String, Integer> table) throws IOException {
+        if (takenBy == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        Integer code = table.get(takenBy);
+        if (code != null) {
+            writeVarInt(out, code);
+        }
+        else {
+            code = table.size() + 1;
+            table.put(takenBy, code);
+            writeVarInt(out, code);
+            writeString(out, takenBy);
+        }
+    }
+
+    private static String readAssignee(DataInput in, List<String> table) throws IOException {
+        int code = readVarInt(in);
+        if (code == 0) {
+            return null;
+        }
+        if (code == table.size() + 1) {
+            table.add(StringDictionary.ASSIGNEES.intern(readString(in)));
+        }
+        else if (code > table.size()) {
+            throw new IOException("Corrupt assignee table");
+        }
+        return table.get(code - 1);
+    }
+
+    /**
+     * Writes a string as its UTF-8 length plus one, then the bytes; 0 means null.
+     */
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a date as its zigzag-encoded epoch day plus one; 0 means null.
+     */
+    static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        if (date == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        long day = date.toEpochDay();
+        writeVarLong(out, ((day << 1) ^ (day >> 63)) + 1);
+    }
+
+    static LocalDate readDate(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value == 0) {
+            return null;
+        }
+        value--;
+        return LocalDate.ofEpochDay((value >>> 1) ^ -(value & 1));
+    }
+
+    static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    static int readSignedVarInt(DataInput in) throws IOException {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes an int seven bits at a time, low bits first, with the high bit of each
+     * byte set while more bytes follow.
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private ProjectsCodec() {}
+}
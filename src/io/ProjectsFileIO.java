@@ -1,7 +1,19 @@
 package io;
+import metrics.Histogram;
+import metrics.Metrics;
 import model.Project;
+import model.ProjectsSnapshot;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32C;
 
 /**
  * Hints on how to implement serialization and deserialization
@@ -9,39 +21,233 @@ import java.util.List;
  */
 public class ProjectsFileIO {
 
+    // the first two bytes of every Java serialization stream
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // the footer after the binary data: its length, its CRC-32C and this magic, "PMGE"
+    private static final int FOOTER_MAGIC = 0x504D4745;
+    private static final int FOOTER_SIZE = 16;
+
+    private static final long DEFAULT_RESIDENT_TASK_BYTES = 64L * 1024 * 1024;
+
+    private static final Histogram SERIALIZE_LATENCY = Metrics.latency("io.serialize");
+    private static final Histogram DESERIALIZE_LATENCY = Metrics.latency("io.deserialize");
+    private static final Histogram DESERIALIZE_LAZILY_LATENCY = Metrics.latency("io.deserializeLazily");
+
     /**
      * Call this method before the application exits, to store the users and projects,
-     * in serialized form.
+     * in the compact binary format of {@link ProjectsCodec}. The data is written
+     * through a file channel with a large direct buffer, followed by a footer with
+     * its length and CRC-32C. It goes to a temporary file that replaces the old
+     * one only once it is complete.
      */
     public static void serializeToFile(File file, List<Project> data) throws IOException {
-        ObjectOutputStream oos = null;
+        serializeToFile(file, data, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Stores projects as {@link #serializeToFile(File, List)}, encoding ranges of
+     * projects in parallel on a pool.
+     *
+     * @param pool The pool to encode on; its parallelism is the number of cores used.
+     */
+    public static void serializeToFile(File file, List<Project> data, ForkJoinPool pool) throws IOException {
+        writeFile(file, out -> ProjectsCodec.write(out, data, pool));
+    }
+
+    /**
+     * Stores the projects of a snapshot as {@link #serializeToFile(File, List)}, as they
+     * were when it was taken. Nothing is locked while the file is written, so writers
+     * are not held up by the save.
+     */
+    public static void serializeToFile(File file, ProjectsSnapshot snapshot) throws IOException {
+        serializeToFile(file, snapshot, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Stores the projects of a snapshot as {@link #serializeToFile(File, ProjectsSnapshot)},
+     * encoding ranges of projects in parallel on a pool.
+     *
+     * @param pool The pool to encode on; its parallelism is the number of cores used.
+     */
+    public static void serializeToFile(File file, ProjectsSnapshot snapshot, ForkJoinPool pool) throws IOException {
+        writeFile(file, out -> ProjectsCodec.write(out, snapshot, pool));
+    }
+
+    /** Writes the binary data of a file, given the stream to write it to. */
+    private interface Encoder {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private static void writeFile(File file, Encoder encoder) throws IOException {
+        long start = Metrics.start();
         try {
-            oos = new ObjectOutputStream(new FileOutputStream((file)));
-            oos.writeObject(data);
-        }finally { //ser till att oos stängs på rätt sätt (oavsett om undantag träffar eller inte)
-            if (oos != null) {
-                oos.close();
+            Path target = file.toPath().toAbsolutePath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ChannelOutputStream out = new ChannelOutputStream(channel, BUFFER_SIZE);
+                encoder.write(new DataOutputStream(out));
+
+                ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+                footer.putLong(out.getCount()).putInt((int) out.getCrc()).putInt(FOOTER_MAGIC).flip();
+                while (footer.hasRemaining()) {
+                    channel.write(footer);
+                }
+                channel.force(false);
             }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            SERIALIZE_LATENCY.recordSince(start);
         }
     }
 
     /**
      * Call this method at startup of the application, to deserialize the users and
-     * from file the specified file.
+     * from file the specified file. Files in the binary format and files written with
+     * Java serialization by earlier versions are both read; the latter are migrated to
+     * the binary format the next time they are saved.
      */
-    @SuppressWarnings("unchecked")
     public static List<Project> deSerializeFromFile(File file) throws IOException, ClassNotFoundException{
-        ObjectInputStream ois = null;
-        try{
-            ois = new ObjectInputStream(new FileInputStream(file));
-            List<Project> projects = (List<Project>) ois.readObject();
-            return projects; //lagra eller bearbeta datan vidare
+        return deSerializeFromFile(file, false);
+    }
+
+    /**
+     * Deserializes projects from a file, either by reading it into a direct buffer or
+     * by mapping it into memory. The checksum in the footer is verified before the
+     * data is parsed; only files written with Java serialization have no footer.
+     *
+     * @param memoryMapped true to map the file instead of reading it.
+     * @throws IOException if the file cannot be read, has no footer or its checksum does not match.
+     */
+    public static List<Project> deSerializeFromFile(File file, boolean memoryMapped) throws IOException, ClassNotFoundException{
+        return deSerializeFromFile(file, memoryMapped, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Deserializes projects from a file as {@link #deSerializeFromFile(File, boolean)},
+     * decoding ranges of projects in parallel on a pool. The projects keep the order
+     * they were saved in, ready for {@link model.ProjectsManager#setProjects}.
+     *
+     * @param pool The pool to decode on; its parallelism is the number of cores used.
+     */
+    public static List<Project> deSerializeFromFile(File file, boolean memoryMapped, ForkJoinPool pool) throws IOException, ClassNotFoundException{
+        long start = Metrics.start();
+        try {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Projects file too large: " + size + " bytes");
+                }
+                ByteBuffer data = memoryMapped
+                        ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                        : readFully(channel, (int) size);
+
+                if (size >= 2 && (((data.get(0) & 0xFF) << 8) | (data.get(1) & 0xFF)) == JAVA_SERIALIZATION_MAGIC) {
+                    return deSerializeLegacy(new ByteBufferInputStream(data));
+                }
+                ByteBuffer body = verifiedBody(data);
+                return ProjectsCodec.read(body, pool); //lagra eller bearbeta datan vidare
+            }
+        } finally {
+            DESERIALIZE_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Deserializes projects from a file without their tasks, which are read from the
+     * file when each project first uses them; the tasks of rarely used projects are
+     * released again when memory runs short. The file is read into memory off the heap
+     * in its compact form and closed again, so the next save can replace it on every
+     * platform; a mapping would keep it open until the garbage collector unmaps it.
+     * Only the index of the projects is checked up front, each project's tasks are
+     * checked when they are read. Files written with Java serialization are read
+     * completely.
+     *
+     * @throws IOException if the file cannot be read or is corrupt.
+     */
+    public static List<Project> deSerializeLazily(File file) throws IOException, ClassNotFoundException{
+        return deSerializeLazily(file, DEFAULT_RESIDENT_TASK_BYTES);
+    }
+
+    /**
+     * Deserializes projects from a file without their tasks, as {@link #deSerializeLazily(File)}.
+     *
+     * @param maxResidentTaskBytes The size in the file of the tasks kept loaded at most.
+     */
+    public static List<Project> deSerializeLazily(File file, long maxResidentTaskBytes) throws IOException, ClassNotFoundException{
+        long start = Metrics.start();
+        try {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Projects file too large: " + size + " bytes");
+                }
+                ByteBuffer data = readFully(channel, (int) size);
+
+                if (size >= 2 && (((data.get(0) & 0xFF) << 8) | (data.get(1) & 0xFF)) == JAVA_SERIALIZATION_MAGIC) {
+                    return deSerializeLegacy(new ByteBufferInputStream(data));
+                }
+                int length = (int) size;
+                if (size < FOOTER_SIZE || data.getInt(length - 4) != FOOTER_MAGIC) {
+                    throw new IOException("Corrupt projects file: no footer");
+                }
+                if (data.getLong(length - FOOTER_SIZE) != size - FOOTER_SIZE) {
+                    throw new IOException("Corrupt projects file: expected " + data.getLong(length - FOOTER_SIZE) + " bytes of data");
+                }
+                ByteBuffer body = data.slice(0, length - FOOTER_SIZE);
+                return ProjectsCodec.readLazily(body, new TaskSegmentCache(maxResidentTaskBytes));
+            }
+        } finally {
+            DESERIALIZE_LAZILY_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Checks the footer of binary data and returns the data without it.
+     *
+     * @throws IOException if the footer is missing or its length or checksum does not match.
+     */
+    private static ByteBuffer verifiedBody(ByteBuffer data) throws IOException {
+        int size = data.limit();
+        if (size < FOOTER_SIZE || data.getInt(size - 4) != FOOTER_MAGIC) {
+            throw new IOException("Corrupt projects file: no footer");
+        }
+        long length = data.getLong(size - FOOTER_SIZE);
+        if (length != size - FOOTER_SIZE) {
+            throw new IOException("Corrupt projects file: expected " + length + " bytes of data");
+        }
+        ByteBuffer body = data.slice(0, (int) length);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != data.getInt(size - 8)) {
+            throw new IOException("Corrupt projects file: checksum mismatch");
         }
-        finally { //ser till ois stängs rätt
-            if (ois != null) {
-                ois.close();
+        return body;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Projects file shrank while reading");
             }
         }
+        return buffer.flip();
+    }
+
+    /**
+     * Reads a list of projects stored with Java serialization.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Project> deSerializeLegacy(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        return (List<Project>) ois.readObject();
     }
 
     private ProjectsFileIO() {}
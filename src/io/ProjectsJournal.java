@@ -0,0 +1,436 @@
+package io;
+import model.IProjectsListener;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import model.exception.TitleNotUniqueException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only journal of the changes made to a {@link ProjectsManager}, written next
+ * to the snapshot file of {@link ProjectsFileIO}.
+ *
+ * Every change reported to the journal as a listener is encoded as a record and kept in
+ * memory; a background thread appends the collected records to the journal file and
+ * forces them to disk in one group, every {@link #FLUSH_INTERVAL_MILLIS} or sooner when
+ * many records are waiting. A thread that adds records while more than
+ * {@link #MAX_PENDING_BYTES} are waiting is held back until the background thread has
+ * written them, so a slow disk slows writers down instead of filling the memory.
+ * On startup the journal is replayed on top of the snapshot. {@link #compact()} writes
+ * the current state as a new snapshot and drops the records it contains; a
+ * {@link PersistenceScheduler} decides when.
+ *
+ * Records hold the full new state of a project or task, so replaying a record whose
+ * change is already in the snapshot has no effect.
+ */
+public class ProjectsJournal implements IProjectsListener, Closeable {
+
+    public static final long FLUSH_INTERVAL_MILLIS = 50;
+    private static final int GROUP_COMMIT_BYTES = 256 * 1024;
+    public static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+    // writers are held back at most this long, so a failing disk does not stop them for good
+    private static final long MAX_BACKPRESSURE_MILLIS = 1000;
+    private static final long COMPACT_THRESHOLD_BYTES = 4 * 1024 * 1024;
+
+    private static final byte PROJECT_PUT = 1;
+    private static final byte PROJECT_REMOVE = 2;
+    private static final byte TASK_PUT = 3;
+    private static final byte TASK_REMOVE = 4;
+
+    // each record is framed by its payload length and the payload's CRC-32C
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+
+    private final File snapshotFile;
+    private final Path journalPath;
+    // records of the journal being compacted, until the new snapshot is written
+    private final Path compactingPath;
+    private final ProjectsManager manager;
+    private final ScheduledExecutorService background;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // guarded by this: records waiting to be written
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // guarded by flushLock
+    private final Object flushLock = new Object();
+    private FileChannel channel;
+    private volatile boolean closed;
+    // one compaction at a time; taken before flushLock
+    private final Object compactLock = new Object();
+
+    private ProjectsJournal(File snapshotFile, File journalFile, ProjectsManager manager) {
+        this.snapshotFile = snapshotFile;
+        this.journalPath = journalFile.toPath();
+        this.compactingPath = journalPath.resolveSibling(journalPath.getFileName() + ".compacting");
+        this.manager = manager;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "projects-journal");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Replays the journal into a manager that holds the last snapshot, then starts
+     * recording the manager's changes in the journal.
+     *
+     * @param snapshotFile The snapshot file the journal is compacted into.
+     * @param journalFile  The journal file, created if it does not exist.
+     * @param manager      The manager, already loaded from the snapshot.
+     * @return The open journal.
+     */
+    public static ProjectsJournal open(File snapshotFile, File journalFile, ProjectsManager manager) throws IOException {
+        ProjectsJournal journal = new ProjectsJournal(snapshotFile, journalFile, manager);
+        journal.replay(journal.compactingPath);
+        journal.replay(journal.journalPath);
+        journal.channel = FileChannel.open(journal.journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        manager.addListener(journal);
+
+        journal.background.scheduleWithFixedDelay(journal::flushQuietly,
+                FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    @Override
+    public void projectAdded(Project project) {
+        putProject(project);
+        for (Task task : project.getTasks()) {
+            taskAdded(project, task);
+        }
+    }
+
+    @Override
+    public void projectChanged(Project project) {
+        putProject(project);
+    }
+
+    @Override
+    public void projectRemoved(Project project) {
+        append(out -> {
+            out.writeByte(PROJECT_REMOVE);
+            ProjectsCodec.writeSignedVarInt(out, project.getId());
+        });
+    }
+
+    @Override
+    public void taskAdded(Project project, Task task) {
+        taskChanged(project, task);
+    }
+
+    @Override
+    public void taskChanged(Project project, Task task) {
+        append(out -> {
+            out.writeByte(TASK_PUT);
+            ProjectsCodec.writeSignedVarInt(out, project.getId());
+            ProjectsCodec.writeSignedVarInt(out, task.getId());
+            ProjectsCodec.writeString(out, task.getDescription());
+            out.writeByte(task.getPrio() == null ? 0 : task.getPrio().ordinal() + 1);
+            out.writeByte(task.getState() == null ? 0 : task.getState().ordinal() + 1);
+            ProjectsCodec.writeString(out, task.getTakenBy());
+            ProjectsCodec.writeDate(out, task.getLastUpdate());
+        });
+    }
+
+    @Override
+    public void taskRemoved(Project project, Task task) {
+        append(out -> {
+            out.writeByte(TASK_REMOVE);
+            ProjectsCodec.writeSignedVarInt(out, project.getId());
+            ProjectsCodec.writeSignedVarInt(out, task.getId());
+        });
+    }
+
+    /**
+     * Writes every waiting record to the journal file and forces it to disk.
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            byte[] records;
+            synchronized (this) {
+                flushRequested.set(false);
+                if (pending.size() == 0) {
+                    return;
+                }
+                records = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                // wakes writers held back by append
+                notifyAll();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Writes the current state of the manager as a new snapshot and drops the journal
+     * records it contains. The state is taken with {@link ProjectsManager#snapshot()},
+     * so it is consistent across projects and writers are not held up while it is
+     * written. Changes made meanwhile go to a fresh journal and are replayed on top of it.
+     * Does nothing once the journal is closed.
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            synchronized (flushLock) {
+                if (closed) {
+                    return;
+                }
+                flush();
+                channel.close();
+                if (Files.exists(compactingPath)) {
+                    // an earlier compaction did not finish, keep its records as well
+                    Files.write(compactingPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+                    Files.delete(journalPath);
+                }
+                else {
+                    Files.move(journalPath, compactingPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+                channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ProjectsFileIO.serializeToFile(snapshotFile, manager.snapshot());
+            Files.delete(compactingPath);
+        }
+    }
+
+    /**
+     * Gets the size of the journal file, without the records still waiting to be written.
+     *
+     * @return The size in bytes.
+     */
+    public long getSize() throws IOException {
+        synchronized (flushLock) {
+            return closed ? 0 : channel.size();
+        }
+    }
+
+    /**
+     * Stops recording, writes every waiting record and compacts the journal if it has
+     * grown large, so the next startup replays little.
+     */
+    @Override
+    public void close() throws IOException {
+        manager.removeListener(this);
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the locks are taken in the order of compact(), which a scheduler may be running
+        synchronized (compactLock) {
+            synchronized (flushLock) {
+                if (closed) {
+                    return;
+                }
+                flush();
+                if (channel.size() > COMPACT_THRESHOLD_BYTES) {
+                    compact();
+                }
+                channel.close();
+                closed = true;
+            }
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Encodes a record with its frame and adds it to the waiting records,
+     * asking the background thread for an early flush when many are waiting.
+     */
+    private void append(RecordWriter writer) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        try {
+            writer.write(new DataOutputStream(payload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen, the stream is in memory
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+
+        boolean full;
+        synchronized (this) {
+            writeInt(pending, bytes.length);
+            writeInt(pending, (int) crc.getValue());
+            pending.write(bytes, 0, bytes.length);
+            full = pending.size() >= GROUP_COMMIT_BYTES;
+        }
+        if (full && flushRequested.compareAndSet(false, true)) {
+            try {
+                background.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // closing, close() writes the waiting records
+            }
+        }
+        if (full) {
+            awaitPendingBelowLimit();
+        }
+    }
+
+    /**
+     * Holds the calling writer back while too many records are waiting to be written.
+     * The flush that drains them takes no project locks, so waiting here while holding
+     * one cannot deadlock.
+     */
+    private synchronized void awaitPendingBelowLimit() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BACKPRESSURE_MILLIS);
+        boolean interrupted = false;
+        while (pending.size() >= MAX_PENDING_BYTES && !closed) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                break;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, left);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void putProject(Project project) {
+        append(out -> {
+            out.writeByte(PROJECT_PUT);
+            ProjectsCodec.writeSignedVarInt(out, project.getId());
+            ProjectsCodec.writeString(out, project.getTitle());
+            ProjectsCodec.writeString(out, project.getDescr());
+            ProjectsCodec.writeDate(out, project.getCreated());
+            ProjectsCodec.writeSignedVarInt(out, project.getNextTaskId());
+        });
+    }
+
+    /**
+     * Applies the records of a journal file to the manager. A torn or corrupt record,
+     * left by a crash in the middle of a write, ends the replay and is cut off the file.
+     */
+    private void replay(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (data.remaining() >= FRAME_HEADER_SIZE) {
+            int start = data.position();
+            int length = data.getInt();
+            int expectedCrc = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                data.position(start);
+                break;
+            }
+            ByteBuffer payload = data.slice(data.position(), length);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                data.position(start);
+                break;
+            }
+            apply(new DataInputStream(new ByteBufferInputStream(payload)));
+            data.position(data.position() + length);
+        }
+        if (data.hasRemaining()) {
+            try (FileChannel truncating = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncating.truncate(data.position());
+            }
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int projectId = ProjectsCodec.readSignedVarInt(in);
+        Project project = manager.getProjectById(projectId);
+        switch (type) {
+            case PROJECT_PUT: {
+                String title = ProjectsCodec.readString(in);
+                String descr = ProjectsCodec.readString(in);
+                LocalDate created = ProjectsCodec.readDate(in);
+                int nextTaskId = ProjectsCodec.readSignedVarInt(in);
+                try {
+                    if (project == null) {
+                        manager.restoreProject(Project.restore(projectId, title, descr, created, nextTaskId));
+                    }
+                    else {
+                        project.setTitle(title);
+                        project.setDescr(descr);
+                        project.setCreated(created);
+                        project.setNextTaskId(nextTaskId);
+                    }
+                } catch (TitleNotUniqueException e) {
+                    // the title is held by a project the snapshot already has in a later
+                    // state; a later record in the journal resolves the conflict
+                }
+                break;
+            }
+            case PROJECT_REMOVE:
+                manager.removeProject(project);
+                break;
+            case TASK_PUT: {
+                int taskId = ProjectsCodec.readSignedVarInt(in);
+                String description = ProjectsCodec.readString(in);
+                int prio = in.readUnsignedByte();
+                int state = in.readUnsignedByte();
+                String takenBy = ProjectsCodec.readString(in);
+                LocalDate lastUpdate = ProjectsCodec.readDate(in);
+                if (project != null) {
+                    project.removeTaskById(taskId);
+                    project.restoreTask(taskId, description, prio == 0 ? null : PRIOS[prio - 1],
+                            state == 0 ? null : STATES[state - 1], takenBy, lastUpdate);
+                    if (taskId >= project.getNextTaskId()) {
+                        project.setNextTaskId(taskId + 1);
+                    }
+                }
+                break;
+            }
+            case TASK_REMOVE: {
+                int taskId = ProjectsCodec.readSignedVarInt(in);
+                if (project != null) {
+                    project.removeTaskById(taskId);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Could not write the projects journal: " + e.getMessage());
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
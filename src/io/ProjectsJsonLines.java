@@ -0,0 +1,277 @@
+package io;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskData;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exports projects and tasks as JSON lines, one object per line, and imports them
+ * again in batches through {@link ProjectsManager#restoreProjects},
+ * {@link Project#restoreTasks} and {@link Project#addTasks}. A new project gets the
+ * tasks that follow it before it is added, so the manager's listeners, such as a
+ * journal, hear of it and its tasks once. Both directions stream; besides the projects
+ * being added, they hold at most one project's tasks or one batch of tasks at a time.
+ *
+ * A project line is {@code {"type":"project","id":..,"title":..,"descr":..,"created":..,
+ * "nextTaskId":..}} and a task line is {@code {"type":"task","project":..,"id":..,"description":..,
+ * "prio":..,"state":..,"takenBy":..,"lastUpdate":..}}, where project is the ID of the
+ * task's project, priorities and states are enum names, and dates are ISO dates.
+ */
+public class ProjectsJsonLines {
+
+    /** The number of lines imported in one batch. */
+    public static final int BATCH_SIZE = 10_000;
+
+    /**
+     * Writes every project of the manager, each followed by its tasks.
+     *
+     * @return The number of lines written.
+     */
+    public static long exportTo(ProjectsManager manager, Writer writer) throws IOException {
+        BufferedWriter out = new BufferedWriter(writer);
+        long lines = 0;
+        for (Project p : manager.getProjects()) {
+            out.write("{\"type\":\"project\",\"id\":" + p.getId()
+                    + ",\"title\":" + Json.quote(p.getTitle())
+                    + ",\"descr\":" + Json.quote(p.getDescr())
+                    + ",\"created\":" + Json.quote(p.getCreated() == null ? null : p.getCreated().toString())
+                    + ",\"nextTaskId\":" + p.getNextTaskId()
+                    + "}\n");
+            lines++;
+            for (Task t : p.getTasks()) {
+                out.write("{\"type\":\"task\",\"project\":" + p.getId()
+                        + ",\"id\":" + t.getId()
+                        + ",\"description\":" + Json.quote(t.getDescription())
+                        + ",\"prio\":" + Json.quote(t.getPrio() == null ? null : t.getPrio().name())
+                        + ",\"state\":" + Json.quote(t.getState() == null ? null : t.getState().name())
+                        + ",\"takenBy\":" + Json.quote(t.getTakenBy())
+                        + ",\"lastUpdate\":" + Json.quote(t.getLastUpdate() == null ? null : t.getLastUpdate().toString())
+                        + "}\n");
+                lines++;
+            }
+        }
+        out.flush();
+        return lines;
+    }
+
+    /**
+     * Reads JSON lines and adds their projects and tasks to the manager. A new project
+     * keeps its creation date and next task ID, and its ID unless the manager already
+     * has a project with it; its tasks keep their IDs. A project whose title the
+     * manager already has is not added again; its tasks go to the existing project as
+     * new tasks, with new IDs. A task line refers to a project line earlier in the
+     * input by its ID, or else to a project of the manager.
+     *
+     * @return The number of projects and tasks added.
+     * @throws IOException if a line is malformed or refers to an unknown project; the
+     *         batches before it have been added.
+     */
+    public static long importFrom(Reader reader, ProjectsManager manager) throws IOException {
+        return new Importer(manager).run(new BufferedReader(reader));
+    }
+
+    private static final class Importer {
+        private final ProjectsManager manager;
+        // the projects of the input that are in the manager, by their ID in the input
+        private final Map<Integer, Project> projectsByInputId = new HashMap<>();
+        // new projects not in the manager yet, by title and by their IDs in the input;
+        // their tasks are added to them before they are
+        private final Map<String, Project> pendingProjects = new LinkedHashMap<>();
+        private final Map<String, List<Integer>> pendingInputIds = new HashMap<>();
+        private final Map<Integer, Project> pendingByInputId = new HashMap<>();
+        // the projects added by this import, whose tasks keep their IDs
+        private final Set<Project> restored = Collections.newSetFromMap(new IdentityHashMap<>());
+        // tasks waiting for projects in the manager: new ones for existing projects,
+        // and ones with their IDs for projects this import has added already
+        private final Map<Project, List<TaskData>> pendingTasks = new IdentityHashMap<>();
+        private final Map<Project, RestoredTasks> pendingRestoredTasks = new IdentityHashMap<>();
+        private int pendingTaskCount;
+        private long added;
+
+        Importer(ProjectsManager manager) {
+            this.manager = manager;
+        }
+
+        long run(BufferedReader in) throws IOException {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Map<String, String> fields = Json.parseObject(line);
+                    String type = fields.get("type");
+                    if ("project".equals(type)) {
+                        project(fields);
+                    }
+                    else if ("task".equals(type)) {
+                        task(fields);
+                    }
+                    else {
+                        throw new IOException("Unknown line type " + type);
+                    }
+                } catch (IOException | IllegalArgumentException | DateTimeParseException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            try {
+                flushProjects();
+                flushTasks();
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            return added;
+        }
+
+        private void project(Map<String, String> fields) throws IOException {
+            int inputId = Integer.parseInt(required(fields, "id"));
+            String title = required(fields, "title");
+            Project existing = manager.getProjectByTitle(title);
+            if (existing != null) {
+                projectsByInputId.put(inputId, existing);
+                return;
+            }
+            Project pending = pendingProjects.get(title);
+            if (pending == null) {
+                // the tasks of the pending projects have been read, when they follow their project
+                if (pendingProjects.size() >= BATCH_SIZE) {
+                    flushProjects();
+                }
+                String created = fields.get("created");
+                String nextTaskId = fields.get("nextTaskId");
+                pending = Project.restore(inputId, title, fields.get("descr"),
+                        created == null ? LocalDate.now() : LocalDate.parse(created),
+                        nextTaskId == null ? 0 : Integer.parseInt(nextTaskId));
+                pendingProjects.put(title, pending);
+            }
+            pendingInputIds.computeIfAbsent(title, k -> new ArrayList<>()).add(inputId);
+            pendingByInputId.put(inputId, pending);
+        }
+
+        private void task(Map<String, String> fields) throws IOException {
+            int inputId = Integer.parseInt(required(fields, "project"));
+            String prio = fields.get("prio");
+            String state = fields.get("state");
+            String lastUpdate = fields.get("lastUpdate");
+            TaskData data = new TaskData(
+                    fields.get("description"),
+                    prio == null ? null : TaskPrio.valueOf(prio),
+                    state == null ? null : TaskState.valueOf(state),
+                    fields.get("takenBy"),
+                    lastUpdate == null ? null : LocalDate.parse(lastUpdate));
+
+            Project pending = pendingByInputId.get(inputId);
+            if (pending != null) {
+                // no manager, so no listener hears of the task until the project is added
+                int id = Integer.parseInt(required(fields, "id"));
+                pending.restoreTask(id, data.getDescription(), data.getPrio(), data.getState(),
+                        data.getTakenBy(), data.getLastUpdate());
+                if (id >= pending.getNextTaskId()) {
+                    pending.setNextTaskId(id + 1);
+                }
+                added++;
+                return;
+            }
+
+            Project project = projectsByInputId.get(inputId);
+            if (project == null) {
+                project = manager.getProjectById(inputId);
+            }
+            if (project == null) {
+                throw new IOException("Unknown project " + inputId);
+            }
+            if (restored.contains(project)) {
+                pendingRestoredTasks.computeIfAbsent(project, k -> new RestoredTasks())
+                        .add(Integer.parseInt(required(fields, "id")), data);
+            }
+            else {
+                pendingTasks.computeIfAbsent(project, k -> new ArrayList<>()).add(data);
+            }
+            if (++pendingTaskCount >= BATCH_SIZE) {
+                flushTasks();
+            }
+        }
+
+        private void flushProjects() {
+            if (pendingProjects.isEmpty()) {
+                return;
+            }
+            List<Project> projects = new ArrayList<>(pendingProjects.values());
+            manager.restoreProjects(projects);
+            for (Project p : projects) {
+                for (int inputId : pendingInputIds.get(p.getTitle())) {
+                    projectsByInputId.put(inputId, p);
+                }
+                restored.add(p);
+                added++;
+            }
+            pendingProjects.clear();
+            pendingInputIds.clear();
+            pendingByInputId.clear();
+        }
+
+        private void flushTasks() {
+            for (Map.Entry<Project, List<TaskData>> entry : pendingTasks.entrySet()) {
+                entry.getKey().addTasks(entry.getValue());
+                added += entry.getValue().size();
+            }
+            for (Map.Entry<Project, RestoredTasks> entry : pendingRestoredTasks.entrySet()) {
+                Project project = entry.getKey();
+                RestoredTasks batch = entry.getValue();
+                project.restoreTasks(batch.ids(), batch.data);
+                if (batch.maxId >= project.getNextTaskId()) {
+                    project.setNextTaskId(batch.maxId + 1);
+                }
+                added += batch.data.size();
+            }
+            pendingTasks.clear();
+            pendingRestoredTasks.clear();
+            pendingTaskCount = 0;
+        }
+
+        private static String required(Map<String, String> fields, String name) throws IOException {
+            String value = fields.get(name);
+            if (value == null) {
+                throw new IOException("Missing " + name);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Tasks with their IDs, waiting for a project this import has added already.
+     */
+    private static final class RestoredTasks {
+        private final List<Integer> ids = new ArrayList<>();
+        private final List<TaskData> data = new ArrayList<>();
+        private int maxId = Integer.MIN_VALUE;
+
+        void add(int id, TaskData task) {
+            ids.add(id);
+            data.add(task);
+            maxId = Math.max(maxId, id);
+        }
+
+        int[] ids() {
+            return ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private ProjectsJsonLines() {}
+}
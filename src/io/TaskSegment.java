@@ -0,0 +1,109 @@
+package io;
+import model.ITaskSource;
+import model.Project;
+import model.TaskState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.zip.CRC32C;
+
+/**
+ * The tasks of one project in a projects file of {@link ProjectsCodec}, together with
+ * the project's entry in the file's index. The tasks are decoded from the segment
+ * when the project first uses them.
+ */
+class TaskSegment implements ITaskSource {
+    private final int id;
+    private final String title;
+    private final String descr;
+    private final LocalDate created;
+    private final int nextTaskId;
+    private final int[] stateCounts;
+    private final LocalDate latestTaskUpdate;
+    private final ByteBuffer data;
+    private final int crc;
+    private final TaskSegmentCache cache;
+
+    TaskSegment(int id, String title, String descr, LocalDate created, int nextTaskId, int[] stateCounts,
+                LocalDate latestTaskUpdate, ByteBuffer data, int crc, TaskSegmentCache cache) {
+        this.id = id;
+        this.title = title;
+        this.descr = descr;
+        this.created = created;
+        this.nextTaskId = nextTaskId;
+        this.stateCounts = stateCounts;
+        this.latestTaskUpdate = latestTaskUpdate;
+        this.data = data;
+        this.crc = crc;
+        this.cache = cache;
+    }
+
+    /**
+     * Creates the project of the index entry.
+     *
+     * @param lazy true to load the tasks from this segment when they are first used,
+     *             false to leave them to the caller.
+     */
+    Project restoreProject(boolean lazy) {
+        return lazy
+                ? Project.restore(id, title, descr, created, nextTaskId, this)
+                : Project.restore(id, title, descr, created, nextTaskId);
+    }
+
+    @Override
+    public void loadTasks(Project project) throws IOException {
+        decodeInto(project);
+        if (cache != null) {
+            cache.loaded(project, data.remaining());
+        }
+    }
+
+    @Override
+    public void copyTasksTo(Project project) throws IOException {
+        decodeInto(project);
+    }
+
+    @Override
+    public void tasksUsed(Project project) {
+        if (cache != null) {
+            cache.used(project);
+        }
+    }
+
+    private void decodeInto(Project project) throws IOException {
+        ByteBuffer segment = data.duplicate();
+        if (cache != null) {
+            // eagerly read files were checked as a whole
+            CRC32C actual = new CRC32C();
+            actual.update(segment.duplicate());
+            if ((int) actual.getValue() != crc) {
+                throw new IOException("Corrupt projects file: checksum mismatch in the tasks of project " + id);
+            }
+        }
+        ProjectsCodec.readTasks(new DataInputStream(new ByteBufferInputStream(segment)), project, new ArrayList<>());
+    }
+
+    @Override
+    public int getTaskCount(TaskState state) {
+        return stateCounts[state.ordinal()];
+    }
+
+    @Override
+    public LocalDate getLatestTaskUpdate() {
+        return latestTaskUpdate;
+    }
+
+    /**
+     * Writes the encoded segment, for a new file holding the same tasks.
+     */
+    void copyTo(ByteArrayOutputStream out) {
+        ByteBuffer segment = data.duplicate();
+        byte[] bytes = new byte[segment.remaining()];
+        segment.get(bytes);
+        out.write(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,109 @@
+package io;
+import model.Project;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the projects whose tasks were loaded from the segments of one
+ * projects file, and evicts the tasks of the least recently used ones again when
+ * their encoded size passes a budget or the garbage collector runs short of memory.
+ * Projects whose tasks have changed since they were loaded cannot be evicted.
+ *
+ * Uses are only stamped on the project's entry, without a lock, so readers of
+ * different projects do not contend; loading and evicting are serialized.
+ */
+class TaskSegmentCache {
+    // use times closer than this are not updated, so busy projects are not written on every read
+    private static final long USE_RESOLUTION_NANOS = 1_000_000;
+
+    private final long maxResidentBytes;
+    // loaded projects, with the encoded size of their tasks and when they were last used
+    private final Map<Project, Resident> resident = new ConcurrentHashMap<>();
+    private long residentBytes;
+    // cleared by the garbage collector before it runs out of memory
+    private SoftReference<Object> memoryPressure = new SoftReference<>(new Object());
+
+    /**
+     * @param maxResidentBytes The encoded size of the tasks kept loaded at most.
+     */
+    TaskSegmentCache(long maxResidentBytes) {
+        this.maxResidentBytes = maxResidentBytes;
+    }
+
+    /**
+     * Records that the tasks of a project were loaded, and evicts others if needed.
+     *
+     * @param project      The project.
+     * @param encodedBytes The size of the project's segment.
+     */
+    synchronized void loaded(Project project, int encodedBytes) {
+        Resident previous = resident.put(project, new Resident(encodedBytes));
+        if (previous != null) {
+            residentBytes -= previous.bytes;
+        }
+        residentBytes += encodedBytes;
+
+        if (memoryPressure.get() == null) {
+            evict(residentBytes / 2, project);
+            memoryPressure = new SoftReference<>(new Object());
+        }
+        if (residentBytes > maxResidentBytes) {
+            evict(residentBytes - maxResidentBytes, project);
+        }
+    }
+
+    /**
+     * Records that the loaded tasks of a project are in use.
+     *
+     * @param project The project.
+     */
+    void used(Project project) {
+        Resident entry = resident.get(project);
+        if (entry != null) {
+            long now = System.nanoTime();
+            if (now - entry.lastUsed > USE_RESOLUTION_NANOS) {
+                entry.lastUsed = now;
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used projects until the given number of bytes is
+     * freed, leaving the project just loaded.
+     */
+    private void evict(long bytes, Project loaded) {
+        List<Map.Entry<Project, Resident>> byUse = new ArrayList<>(resident.entrySet());
+        byUse.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        long freed = 0;
+        for (Map.Entry<Project, Resident> entry : byUse) {
+            if (freed >= bytes) {
+                break;
+            }
+            Project project = entry.getKey();
+            if (project == loaded) {
+                continue;
+            }
+            // a project that changed keeps its tasks; one in use by another thread is left for next time
+            if (project.evictTasks() || project.getTaskSource() == null || !project.isTasksLoaded()) {
+                resident.remove(project);
+                residentBytes -= entry.getValue().bytes;
+                freed += entry.getValue().bytes;
+            }
+        }
+    }
+
+    private static final class Resident {
+        final int bytes;
+        // System.nanoTime of the last use, roughly
+        volatile long lastUsed = System.nanoTime();
+
+        Resident(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only grows, such as the number of matcher evaluations. Adding is
+ * spread over cells per thread, so threads counting at once do not contend.
+ */
+public final class Counter {
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Adds to the count if metrics are enabled.
+     *
+     * @param n The amount to add.
+     */
+    public void add(long n) {
+        if (Metrics.isEnabled()) {
+            value.add(n);
+        }
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    public void reset() {
+        value.reset();
+    }
+}
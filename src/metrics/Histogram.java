@@ -0,0 +1,153 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds or result
+ * sizes, with log-linear buckets in the style of HdrHistogram: every power of two is
+ * split into 16 buckets, so any recorded value is known within about 6%. The counts
+ * and the sum are spread over cells per thread, as in {@link Counter}, and the maximum
+ * is only written when a value exceeds it, so threads recording at once do not contend.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below SUB_BUCKETS have a bucket each, then 16 per power of two up to 2^63
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final boolean latency;
+    private final LongAdder[] counts = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String name, boolean latency) {
+        this.name = name;
+        this.latency = latency;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tells whether the histogram records latencies in nanoseconds.
+     *
+     * @return true for latencies, false for other values.
+     */
+    public boolean isLatency() {
+        return latency;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        // most values are below the maximum, which is then only read
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Records the time since a start time taken with {@link Metrics#start()}, unless
+     * metrics were disabled when it was taken.
+     *
+     * @param startNanos The start time, or 0 if metrics were disabled.
+     */
+    public void recordSince(long startNanos) {
+        if (startNanos != 0) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a value if metrics are enabled.
+     *
+     * @param value The value.
+     */
+    public void recordIfEnabled(long value) {
+        if (Metrics.isEnabled()) {
+            record(value);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets a value at or below which the given share of the recorded values lie.
+     *
+     * @param quantile The share, from 0 to 1.
+     * @return The upper bound of the bucket holding the quantile, at most the largest
+     *         recorded value, or 0 if nothing was recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i].sum();
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i].reset();
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // keep the highest five bits of the value: the leading one and four below it
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return shift >= 59 && sub == 2 * SUB_BUCKETS - 1 ? Long.MAX_VALUE : ((sub + 1) << shift) - 1;
+    }
+}
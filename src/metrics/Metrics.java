@@ -0,0 +1,164 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The registry of the application's metrics: latency and size histograms and
+ * counters, created once by the classes they measure and kept in static fields.
+ *
+ * A timed operation takes {@link #start()} before it runs and hands the result to
+ * {@link Histogram#recordSince(long)} after, which costs two clock reads and a few
+ * uncontended increments. While metrics are disabled start returns 0 and nothing is
+ * recorded. Metrics are enabled unless the system property {@code projects.metrics}
+ * is {@code false}.
+ */
+public final class Metrics {
+
+    /** The name of the registry's MBean. */
+    public static final String OBJECT_NAME = "projects:type=Metrics";
+
+    private static volatile boolean enabled = !"false".equals(System.getProperty("projects.metrics"));
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the latency histogram with a name, creating it on first use.
+     *
+     * @param name The name, with dots between the parts, such as {@code projects.addProject}.
+     * @return The histogram, recording nanoseconds.
+     */
+    public static Histogram latency(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, true));
+    }
+
+    /**
+     * Gets the histogram of plain values with a name, creating it on first use.
+     *
+     * @param name The name, with dots between the parts.
+     * @return The histogram.
+     */
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, false));
+    }
+
+    /**
+     * Gets the counter with a name, creating it on first use.
+     *
+     * @param name The name, with dots between the parts.
+     * @return The counter.
+     */
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Gets the start time of an operation to be recorded in a latency histogram.
+     *
+     * @return The current time in nanoseconds, or 0 if metrics are disabled.
+     */
+    public static long start() {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        return now != 0 ? now : 1;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Gets every histogram, ordered by name.
+     *
+     * @return The histograms.
+     */
+    public static List<Histogram> getHistograms() {
+        return sortedValues(histograms);
+    }
+
+    /**
+     * Gets every counter, ordered by name.
+     *
+     * @return The counters.
+     */
+    public static List<Counter> getCounters() {
+        return sortedValues(counters);
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public static void reset() {
+        histograms.values().forEach(Histogram::reset);
+        counters.values().forEach(Counter::reset);
+    }
+
+    /**
+     * Writes every metric in the Prometheus text format: histograms as summaries with
+     * the median, 90th, 99th and 99.9th percentiles, latencies in seconds.
+     *
+     * @param out Where to write.
+     */
+    public static void writeText(Appendable out) throws IOException {
+        for (Histogram h : getHistograms()) {
+            String name = exportName(h.getName()) + (h.isLatency() ? "_seconds" : "");
+            double scale = h.isLatency() ? 1e-9 : 1;
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+                out.append(name).append("{quantile=\"").append(Double.toString(q)).append("\"} ")
+                        .append(number(h.getValueAtQuantile(q) * scale)).append('\n');
+            }
+            out.append(name).append("_sum ").append(number(h.getSum() * scale)).append('\n');
+            out.append(name).append("_count ").append(Long.toString(h.getCount())).append('\n');
+        }
+        for (Counter c : getCounters()) {
+            String name = exportName(c.getName()) + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(Long.toString(c.get())).append('\n');
+        }
+    }
+
+    /**
+     * Registers the registry's MBean with the platform MBean server, so the metrics
+     * can be read with JConsole or any JMX client. Registering twice has no effect.
+     */
+    public static void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new MetricsMBean(), name);
+        }
+    }
+
+    static String exportName(String name) {
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    private static <T> List<T> sortedValues(Map<String, T> map) {
+        return Collections.unmodifiableList(new ArrayList<>(new TreeMap<>(map).values()));
+    }
+
+    private Metrics() {}
+}
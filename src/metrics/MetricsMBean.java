@@ -0,0 +1,135 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes the registry over JMX. Each histogram has the attributes
+ * {@code <name>.count}, {@code .mean}, {@code .max}, {@code .p50}, {@code .p90},
+ * {@code .p99} and {@code .p999}, latencies in nanoseconds; each counter has an
+ * attribute named as the counter. {@code Enabled} turns recording on and off.
+ */
+class MetricsMBean implements DynamicMBean {
+    private static final String ENABLED = "Enabled";
+    private static final String[] HISTOGRAM_STATS = {"count", "mean", "max", "p50", "p90", "p99", "p999"};
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (attribute.equals(ENABLED)) {
+            return Metrics.isEnabled();
+        }
+        for (Counter c : Metrics.getCounters()) {
+            if (c.getName().equals(attribute)) {
+                return c.get();
+            }
+        }
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            String name = attribute.substring(0, dot);
+            for (Histogram h : Metrics.getHistograms()) {
+                if (h.getName().equals(name)) {
+                    return stat(h, attribute.substring(dot + 1));
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+        if (!attribute.getName().equals(ENABLED)) {
+            throw new AttributeNotFoundException(attribute.getName());
+        }
+        if (!(attribute.getValue() instanceof Boolean)) {
+            throw new InvalidAttributeValueException("Enabled must be a boolean");
+        }
+        Metrics.setEnabled((Boolean) attribute.getValue());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // left out, as the interface asks
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        AttributeList set = new AttributeList();
+        for (Attribute attribute : attributes.asList()) {
+            try {
+                setAttribute(attribute);
+                set.add(attribute);
+            } catch (AttributeNotFoundException | InvalidAttributeValueException e) {
+                // left out, as the interface asks
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if (actionName.equals("reset") && (params == null || params.length == 0)) {
+            Metrics.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        attributes.add(new MBeanAttributeInfo(ENABLED, "boolean", "Whether metrics are recorded", true, true, true));
+        for (Histogram h : Metrics.getHistograms()) {
+            for (String stat : HISTOGRAM_STATS) {
+                String type = stat.equals("mean") ? "double" : "long";
+                attributes.add(new MBeanAttributeInfo(h.getName() + "." + stat, type,
+                        stat + " of " + h.getName() + (h.isLatency() ? " in nanoseconds" : ""), true, false, false));
+            }
+        }
+        for (Counter c : Metrics.getCounters()) {
+            attributes.add(new MBeanAttributeInfo(c.getName(), "long", c.getName(), true, false, false));
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Forgets every recorded value",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(getClass().getName(), "Metrics of the projects manager",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] {reset}, null);
+    }
+
+    private static Object stat(Histogram h, String stat) throws AttributeNotFoundException {
+        switch (stat) {
+            case "count":
+                return h.getCount();
+            case "mean":
+                return h.getCount() == 0 ? 0.0 : (double) h.getSum() / h.getCount();
+            case "max":
+                return h.getMax();
+            case "p50":
+                return h.getValueAtQuantile(0.5);
+            case "p90":
+                return h.getValueAtQuantile(0.9);
+            case "p99":
+                return h.getValueAtQuantile(0.99);
+            case "p999":
+                return h.getValueAtQuantile(0.999);
+            default:
+                throw new AttributeNotFoundException(h.getName() + "." + stat);
+        }
+    }
+}
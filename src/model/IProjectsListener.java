@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Receives every change made to the projects and tasks of a {@link ProjectsManager}.
+ * Callbacks run on the thread making the change, while it holds the lock of the
+ * project or manager involved, so they must be quick and must not modify the model.
+ */
+public interface IProjectsListener {
+    /** A project, together with the tasks it already has, was added to the manager. */
+    void projectAdded(Project project);
+
+    /** The title, description, creation date or next task ID of a project changed. */
+    void projectChanged(Project project);
+
+    void projectRemoved(Project project);
+
+    void taskAdded(Project project, Task task);
+
+    /**
+     * An attribute of a task changed; the task holds its new values. A task that
+     * changes its ID is first reported removed, while it still has the old ID.
+     */
+    void taskChanged(Project project, Task task);
+
+    void taskRemoved(Project project, Task task);
+}
@@ -0,0 +1,40 @@
+package model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Where the tasks of a project can be loaded from when they are first needed, such as
+ * a segment of a projects file. Until then the project answers counts and dates from
+ * the summary kept by the source.
+ */
+public interface ITaskSource {
+    /**
+     * Adds the stored tasks to the project with {@link Project#restoreTask}.
+     * Called with the project's write lock held.
+     */
+    void loadTasks(Project project) throws IOException;
+
+    /**
+     * Adds the stored tasks to a project that does not load its tasks from this source,
+     * such as a copy decoded for a {@link ProjectSnapshot}. Unlike {@link #loadTasks}
+     * the project is not kept track of.
+     */
+    default void copyTasksTo(Project project) throws IOException {
+        loadTasks(project);
+    }
+
+    /**
+     * Tells the source that the loaded tasks of a project are being used, so a source
+     * that releases loaded tasks again can keep those used most recently. Called on
+     * every read of the tasks, so it must be cheap; the default does nothing.
+     */
+    default void tasksUsed(Project project) {
+    }
+
+    /** The number of stored tasks in a state, tasks without a state counted as TO_DO. */
+    int getTaskCount(TaskState state);
+
+    /** The latest last update date of the stored tasks, or null. */
+    LocalDate getLatestTaskUpdate();
+}
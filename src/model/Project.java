@@ -1,21 +1,98 @@
 package model;
 import java.time.LocalDate;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
 import model.matcher.ITaskMatcher;
 
 /**
  * Represents a project that contains tasks.
+ *
+ * The tasks of a project, its indexes and aggregates are guarded by a read-write lock
+ * per project, so threads working on different projects never contend. Task setters
+ * take the write lock of the task's project.
+ *
+ * A project restored with an {@link ITaskSource} loads its tasks only when they are
+ * first used, and can release them again with {@link #evictTasks()} as long as they
+ * have not changed since they were loaded.
+ *
+ * Readers that must not see a project change under them take an immutable
+ * {@link ProjectSnapshot} instead, copied on write: a snapshot only pins the version
+ * of the project, and the first change after it copies the version before it is
+ * made. Versions are kept while memory allows, so later snapshots share the copies
+ * of unchanged tasks, and a project whose tasks are unchanged in a task source is
+ * not copied at all.
  */
 public class Project implements Comparable<Project>, Serializable {
-    private String title;
+    private static final long serialVersionUID = 7150208544342725819L;
+
+    // index answers with fewer candidates than 1/16 of the tasks are sorted, larger ones walk sortedTasks
+    private static final int SORT_CANDIDATES_RATIO = 16;
+    // the number of sorted tasks a stream of streamTasks looks at per hold of the read lock
+    private static final int STREAM_CHUNK = 256;
+
+    // the order of findTasks results: Task.compareTo, with the ID to tell equal tasks apart
+    private static final Comparator<Task> TASK_ORDER =
+            Comparator.comparing(Task::getPrio, Comparator.nullsFirst(Comparator.<TaskPrio>naturalOrder()))
+                    .thenComparing(Task::getDescription, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparingInt(Task::getId);
+
+    private static final Histogram FIND_TASKS_LATENCY = Metrics.latency("tasks.findTasks");
+    private static final Histogram FIND_TASKS_RESULTS = Metrics.histogram("tasks.findTasks.results");
+    private static final Counter MATCHER_EVALUATIONS = Metrics.counter("tasks.matcherEvaluations");
+
+    private volatile String title;
     private int id;
     private int nextTaskId;
     private String descr;
     private LocalDate created;
     private List<Task> tasks;
+    private transient volatile ProjectsManager manager;
+    private transient ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // task id -> position in tasks
+    private transient IntIntMap taskPositions;
+    private transient TaskIndex taskIndex;
+    private transient TreeSet<Task> sortedTasks;
+    // latest lastUpdate of any task, recomputed lazily when the latest one goes away
+    private transient LocalDate latestTaskUpdate;
+    private transient boolean latestTaskUpdateStale;
+    // where the tasks can be loaded from unchanged, null once they have been modified
+    private transient volatile ITaskSource taskSource;
+    private transient volatile boolean tasksLoaded = true;
+    // moved on by every change to the tasks, so cached query results can tell they are stale
+    private transient volatile long modificationCount;
+    // set while the task source adds the loaded tasks, which are no changes
+    private transient boolean loadingTasks;
+    // the task changed by Task.update, whose listeners are told once at its end
+    private transient Task updatingTask;
+    private transient boolean updatingTaskChanged;
+    // the latest version taken for a snapshot, current while its modification count is
+    private transient volatile SoftReference<ProjectSnapshot> version;
+    // snapshots waiting for the current version, filled in by the next change
+    private transient ConcurrentLinkedQueue<VersionPin> pins = new ConcurrentLinkedQueue<>();
 
     /**
      * Creates a new project with the given title, description, and ID.
@@ -30,6 +107,47 @@ public class Project implements Comparable<Project>, Serializable {
         this.id = id;
         this.created = LocalDate.now();
         tasks = new ArrayList<>();
+        taskPositions = new IntIntMap(0);
+        taskIndex = new TaskIndex();
+        sortedTasks = new TreeSet<>(TASK_ORDER);
+    }
+
+    /**
+     * Creates a project with all of its stored attributes and no tasks, for example
+     * when loading projects from a file. Tasks are added with {@link #restoreTask}.
+     *
+     * @param id         The unique ID for the project.
+     * @param title      The project's title.
+     * @param descr      The project's description.
+     * @param created    The creation date of the project.
+     * @param nextTaskId The next task ID for the project.
+     * @return The restored project.
+     */
+    public static Project restore(int id, String title, String descr, LocalDate created, int nextTaskId) {
+        Project project = new Project(title, descr, id);
+        project.created = created;
+        project.nextTaskId = nextTaskId;
+        return project;
+    }
+
+    /**
+     * Creates a project with all of its stored attributes whose tasks are loaded from
+     * a task source when they are first used.
+     *
+     * @param id         The unique ID for the project.
+     * @param title      The project's title.
+     * @param descr      The project's description.
+     * @param created    The creation date of the project.
+     * @param nextTaskId The next task ID for the project.
+     * @param taskSource The source of the project's tasks.
+     * @return The restored project, with its tasks not loaded yet.
+     */
+    public static Project restore(int id, String title, String descr, LocalDate created, int nextTaskId,
+                                  ITaskSource taskSource) {
+        Project project = restore(id, title, descr, created, nextTaskId);
+        project.taskSource = taskSource;
+        project.tasksLoaded = false;
+        return project;
     }
 
     /**
@@ -78,33 +196,114 @@ public class Project implements Comparable<Project>, Serializable {
     }
 
     /**
-     * Gets a list of tasks in the project.
+     * Gets a list of tasks in the project. Removing a task moves the last task
+     * into its place, so the order is not guaranteed to be the order of addition.
+     * The tasks themselves go on changing; {@link #snapshot()} gives copies of them
+     * that do not.
      *
      * @return A list of tasks.
      */
     public List<Task> getTasks() {
-        if (tasks == null) {
-            return new ArrayList<>();
+        readLockLoaded();
+        try {
+            return new ArrayList<>(tasks);
+        } finally {
+            lock.readLock().unlock();
         }
-        return new ArrayList<>(tasks);
     }
 
     /**
-     * Sets the project's title.
+     * Gets a read-only view of the tasks in the project, in the order of
+     * {@link #getTasks()}. Unlike getTasks nothing is copied; the view follows later
+     * changes, including {@link #setTasks} and tasks evicted by {@link #evictTasks()},
+     * which the next read loads again. Each read takes the read lock, so it never sees
+     * a change half made, but an iteration while tasks are added or removed may miss
+     * the task a removal moves, or see it twice; it never throws
+     * {@link java.util.ConcurrentModificationException}.
+     *
+     * @return A read-only view of the tasks.
+     */
+    public List<Task> getTasksView() {
+        return new TasksView();
+    }
+
+    /**
+     * Sets the project's title. If the project is registered in a
+     * {@link ProjectsManager}, the manager's title index is updated as well.
      *
      * @param title The new project title.
+     * @throws model.exception.TitleNotUniqueException if the project is registered and
+     *         another registered project already has the title.
      */
     public void setTitle(String title) {
-        this.title = title;
+        ProjectsManager registeredIn = manager;
+        if (registeredIn != null) {
+            registeredIn.renameProject(this, title);
+        }
+        else {
+            assignTitle(title);
+        }
     }
 
     /**
-     * Sets the ID of the project.
+     * Sets the title without going through the manager. Called by the manager
+     * while it holds its lock and updates its title index.
+     *
+     * @param title The new project title.
+     */
+    void assignTitle(String title) {
+        lock.writeLock().lock();
+        try {
+            preserveVersion();
+            this.title = title;
+            modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the manager this project is registered in, or null when it is removed.
+     *
+     * @param manager The owning manager.
+     */
+    void setManager(ProjectsManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Sets the ID of the project. If the project is registered in a
+     * {@link ProjectsManager}, the manager's ID index is updated as well.
      *
      * @param id The new ID for the project.
+     * @throws IllegalArgumentException if the project is registered and another
+     *         registered project already has the ID.
      */
     public void setId(int id) {
-        this.id = id;
+        ProjectsManager registeredIn = manager;
+        if (registeredIn != null) {
+            registeredIn.changeProjectId(this, id);
+        }
+        else {
+            assignId(id);
+        }
+    }
+
+    /**
+     * Sets the ID without going through the manager. Called by the manager
+     * while it holds its lock and updates its ID index.
+     *
+     * @param id The new ID for the project.
+     */
+    void assignId(int id) {
+        lock.writeLock().lock();
+        try {
+            preserveVersion();
+            this.id = id;
+            modificationCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -113,7 +312,15 @@ public class Project implements Comparable<Project>, Serializable {
      * @param nextTaskId The new next task ID for the project.
      */
     public void setNextTaskId(int nextTaskId) {
-        this.nextTaskId = nextTaskId;
+        lock.writeLock().lock();
+        try {
+            preserveVersion();
+            this.nextTaskId = nextTaskId;
+            modificationCount++;
+            fireProjectChanged();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -122,7 +329,15 @@ public class Project implements Comparable<Project>, Serializable {
      * @param descr The new description for the project.
      */
     public void setDescr(String descr) {
-        this.descr = descr;
+        lock.writeLock().lock();
+        try {
+            preserveVersion();
+            this.descr = descr;
+            modificationCount++;
+            fireProjectChanged();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -131,7 +346,15 @@ public class Project implements Comparable<Project>, Serializable {
      * @param created The new creation date for the project.
      */
     public void setCreated(LocalDate created) {
-        this.created = created;
+        lock.writeLock().lock();
+        try {
+            preserveVersion();
+            this.created = created;
+            modificationCount++;
+            fireProjectChanged();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -140,7 +363,28 @@ public class Project implements Comparable<Project>, Serializable {
      * @param tasks The new list of tasks for the project.
      */
     public void setTasks(List<Task> tasks) {
-        this.tasks = tasks;
+        lock.writeLock().lock();
+        try {
+            loadTasksLocked();
+            preserveVersion();
+            taskSource = null;
+            ProjectsManager registeredIn = manager;
+            for (Task task : this.tasks) {
+                task.setOwner(null);
+                if (registeredIn != null) {
+                    registeredIn.fireTaskRemoved(this, task);
+                }
+            }
+            this.tasks = tasks != null ? new ArrayList<>(tasks) : new ArrayList<>();
+            rebuildTaskIndex();
+            if (registeredIn != null) {
+                for (Task task : this.tasks) {
+                    registeredIn.fireTaskAdded(this, task);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -150,25 +394,199 @@ public class Project implements Comparable<Project>, Serializable {
      * @return The task with the specified ID, or null if not found.
      */
     public Task getTaskById(int id) {
-        return tasks.get(id);
+        readLockLoaded();
+        try {
+            int pos = taskPositions.get(id, -1);
+            return pos < 0 ? null : tasks.get(pos);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Finds and returns a list of tasks in the project that match a specified task matcher.
+     * The matchers in {@code model.matcher}, and and/or/not combinations of them, are
+     * answered from the project's indexes; other matchers are evaluated on every task,
+     * or only on the candidates of the indexed parts of an {@code AndMatcher}.
+     * For a project in a manager, the results of those matchers are cached until the
+     * project next changes.
      *
      * @param matcher The task matcher to use for matching tasks.
-     * @return A sorted list of tasks that match the specified criteria.
+     * @return An unmodifiable list of tasks that match the specified criteria, sorted
+     *         by priority, description and ID.
      */
     public List<Task> findTasks(ITaskMatcher matcher) {
+        long start = Metrics.start();
+        readLockLoaded();
+        try {
+            TaskQueryCache cache = queryCacheFor(matcher);
+            if (cache != null) {
+                List<Task> cached = cache.get(this, matcher, modificationCount);
+                if (cached != null) {
+                    return recordFind(start, cached);
+                }
+            }
+            List<Task> matchedTasks = Collections.unmodifiableList(searchTasks(matcher));
+            if (cache != null) {
+                cache.put(this, matcher, modificationCount, matchedTasks);
+            }
+            return recordFind(start, matchedTasks);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the tasks that match a matcher, from the indexes where they can answer it.
+     * The caller holds the read lock.
+     *
+     * @param matcher The task matcher to use for matching tasks.
+     * @return The matching tasks, sorted by priority, description and ID.
+     */
+    private List<Task> searchTasks(ITaskMatcher matcher) {
+        TaskQueryPlan plan = TaskQueryPlan.plan(matcher, taskIndex, tasks.size());
+        if (plan != null && plan.getCandidates().cardinality() * SORT_CANDIDATES_RATIO < tasks.size()) {
+            // few candidates, sorting them is cheaper than walking every task in order
+            List<Task> matchedTasks = new ArrayList<>();
+            BitSet hits = plan.getCandidates();
+            for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+                Task task = tasks.get(i);
+                if (plan.isExact() || plan.matchesResidual(task)) {
+                    matchedTasks.add(task);
+                }
+            }
+            if (!plan.isExact()) {
+                MATCHER_EVALUATIONS.add(hits.cardinality());
+            }
+            matchedTasks.sort(TASK_ORDER);
+            return matchedTasks;
+        }
+        return walkSortedTasks(matcher, plan, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds one page of the tasks in the project that match a specified task matcher,
+     * in the order of {@link #findTasks(ITaskMatcher)}. Stops looking once the page is full.
+     *
+     * @param matcher The task matcher to use for matching tasks.
+     * @param offset  The number of matching tasks to skip.
+     * @param limit   The maximum number of tasks to return.
+     * @return The matching tasks from offset, at most limit of them.
+     */
+    public List<Task> findTasks(ITaskMatcher matcher, int offset, int limit) {
+        long start = Metrics.start();
+        readLockLoaded();
+        try {
+            if (offset < 0 || limit < 0) {
+                throw new IllegalArgumentException("offset and limit must not be negative");
+            }
+            TaskQueryCache cache = queryCacheFor(matcher);
+            List<Task> cached = cache != null ? cache.get(this, matcher, modificationCount) : null;
+            if (cached != null) {
+                int from = Math.min(offset, cached.size());
+                int to = (int) Math.min(cached.size(), (long) offset + limit);
+                return recordFind(start, new ArrayList<>(cached.subList(from, to)));
+            }
+            return recordFind(start, walkSortedTasks(matcher, TaskQueryPlan.plan(matcher, taskIndex, tasks.size()), offset, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the cache for the results of a matcher.
+     *
+     * @param matcher The matcher.
+     * @return The cache of the project's manager, or null if the project has no manager
+     *         or the matcher's results cannot be cached.
+     */
+    private TaskQueryCache queryCacheFor(ITaskMatcher matcher) {
+        ProjectsManager registeredIn = manager;
+        return registeredIn != null && TaskQueryCache.isCacheable(matcher) ? registeredIn.getTaskQueryCache() : null;
+    }
+
+    /**
+     * Gets the modification count of the project, which changes every time a task is
+     * added, removed or changed, the tasks are loaded or released, or an attribute of
+     * the project is set.
+     *
+     * @return The modification count.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    private static List<Task> recordFind(long start, List<Task> found) {
+        if (start != 0) {
+            FIND_TASKS_RESULTS.record(found.size());
+            FIND_TASKS_LATENCY.recordSince(start);
+        }
+        return found;
+    }
+
+    /**
+     * Gets a lazy stream of the tasks in the project that match a specified task matcher,
+     * in the order of {@link #findTasks(ITaskMatcher)}. The stream walks the tasks in
+     * that order a few hundred at a time, each chunk under the read lock and from the
+     * indexes where they can answer the matcher, so short-circuiting operations such as
+     * {@code limit} or {@code findFirst} stop the walk and writers are not held up by a
+     * slow consumer.
+     *
+     * The stream is weakly consistent: the project may change between chunks. Every task
+     * that is in the project and unchanged for the whole walk is seen once; a task
+     * added, removed or changed meanwhile may or may not be seen, and one whose
+     * priority, description or ID changes may be seen twice.
+     *
+     * @param matcher The task matcher to use for matching tasks.
+     * @return A stream of the matching tasks.
+     */
+    public Stream<Task> streamTasks(ITaskMatcher matcher) {
+        return StreamSupport.stream(new MatchingTasks(matcher), false);
+    }
+
+    /**
+     * Walks the tasks in sorted order and collects one page of matches.
+     *
+     * @param matcher The task matcher to use for matching tasks.
+     * @param plan    The index plan for the matcher, or null to evaluate it on every task.
+     * @param offset  The number of matching tasks to skip.
+     * @param limit   The maximum number of tasks to return.
+     * @return The matching tasks.
+     */
+    private List<Task> walkSortedTasks(ITaskMatcher matcher, TaskQueryPlan plan, int offset, int limit) {
         List<Task> matchedTasks = new ArrayList<>();
-        for (Task task: tasks) {
-            if (matcher.match(task)) {
-                matchedTasks.add(task);
+        int skipped = 0;
+        int evaluations = 0;
+        for (Task task : sortedTasks) {
+            if (matchedTasks.size() >= limit) {
+                break;
+            }
+            boolean matches;
+            if (plan == null) {
+                evaluations++;
+                matches = matcher.match(task);
+            }
+            else if (!plan.getCandidates().get(positionOf(task))) {
+                matches = false;
+            }
+            else if (plan.isExact()) {
+                matches = true;
+            }
+            else {
+                evaluations++;
+                matches = plan.matchesResidual(task);
+            }
+            if (matches) {
+                if (skipped < offset) {
+                    skipped++;
+                }
+                else {
+                    matchedTasks.add(task);
+                }
             }
         }
-        Collections.sort(matchedTasks);
+        MATCHER_EVALUATIONS.add(evaluations);
         return matchedTasks;
-
     }
 
     /**
@@ -179,11 +597,242 @@ public class Project implements Comparable<Project>, Serializable {
      * @return The newly created task.
      */
     public Task addTask(String descr, TaskPrio prio) {
-        int nextId = nextTaskId;
-        Task newTask = new Task(descr, nextId, prio);
-        tasks.add(newTask);
-        nextTaskId++;
-        return newTask;
+        lock.writeLock().lock();
+        try {
+            loadTasksLocked();
+            int nextId = nextTaskId;
+            Task newTask = new Task(descr, nextId, prio);
+            attachTask(newTask);
+            nextTaskId++;
+            ProjectsManager registeredIn = manager;
+            if (registeredIn != null) {
+                registeredIn.fireTaskAdded(this, newTask);
+            }
+            return newTask;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several new tasks in one step. The tasks get consecutive IDs from the next
+     * task ID and the task list grows once; when more tasks are added than the project
+     * has, the indexes are rebuilt once instead of updated task by task.
+     *
+     * @param newTasks The attributes of the new tasks.
+     * @return The newly created tasks, in the order of the collection.
+     */
+    public List<Task> addTasks(Collection<TaskData> newTasks) {
+        List<Task> created = new ArrayList<>(newTasks.size());
+        lock.writeLock().lock();
+        try {
+            loadTasksLocked();
+            preserveVersion();
+            int nextId = nextTaskId;
+            for (TaskData data : newTasks) {
+                Task newTask = new Task(data.getDescription(), nextId++, data.getPrio());
+                if (data.getState() != null) {
+                    newTask.setState(data.getState());
+                }
+                if (data.getTakenBy() != null) {
+                    newTask.setTakenBy(data.getTakenBy());
+                }
+                if (data.getLastUpdate() != null) {
+                    newTask.setLastUpdate(data.getLastUpdate());
+                }
+                created.add(newTask);
+            }
+            nextTaskId = nextId;
+
+            if (created.size() > tasks.size()) {
+                tasks.addAll(created);
+                rebuildTaskIndex();
+            }
+            else {
+                if (tasks instanceof ArrayList) {
+                    ((ArrayList<Task>) tasks).ensureCapacity(tasks.size() + created.size());
+                }
+                for (Task task : created) {
+                    attachTask(task);
+                }
+            }
+            taskSource = null;
+            ProjectsManager registeredIn = manager;
+            if (registeredIn != null) {
+                for (Task task : created) {
+                    registeredIn.fireTaskAdded(this, task);
+                }
+            }
+            return created;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the state of every task that matches a matcher, as one step under the
+     * project's lock. Tasks already in the state are left as they are.
+     *
+     * @param matcher The task matcher selecting the tasks.
+     * @param state   The new state.
+     * @return The number of tasks that changed state.
+     */
+    public int setTaskStates(ITaskMatcher matcher, TaskState state) {
+        lock.writeLock().lock();
+        try {
+            loadTasksLocked();
+            TaskQueryPlan plan = TaskQueryPlan.plan(matcher, taskIndex, tasks.size());
+            List<Task> matchedTasks = new ArrayList<>();
+            if (plan != null) {
+                BitSet hits = plan.getCandidates();
+                for (int i = hits.nextSetBit(0); i >= 0; i = hits.nextSetBit(i + 1)) {
+                    Task task = tasks.get(i);
+                    if ((plan.isExact() || plan.matchesResidual(task)) && task.getState() != state) {
+                        matchedTasks.add(task);
+                    }
+                }
+            }
+            else {
+                for (Task task : tasks) {
+                    if (matcher.match(task) && task.getState() != state) {
+                        matchedTasks.add(task);
+                    }
+                }
+            }
+            // the state index changes as the tasks are updated, so they are collected first
+            for (Task task : matchedTasks) {
+                task.setState(state);
+            }
+            return matchedTasks.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a previously stored task to the project with all of its attributes, for
+     * example when loading projects from a file. The next task ID is not changed.
+     *
+     * @param id          The ID of the task.
+     * @param description The description of the task.
+     * @param prio        The priority of the task.
+     * @param state       The state of the task, or null.
+     * @param takenBy     The user who has taken the task, or null.
+     * @param lastUpdate  The date of the last update of the task, or null.
+     * @return The restored task.
+     * @throws IllegalArgumentException if the project already has a task with the ID.
+     */
+    public Task restoreTask(int id, String description, TaskPrio prio, TaskState state,
+                            String takenBy, LocalDate lastUpdate) {
+        Task task = new Task(description, id, prio);
+        task.setState(state);
+        if (takenBy != null) {
+            task.setTakenBy(takenBy);
+        }
+        task.setLastUpdate(lastUpdate);
+
+        lock.writeLock().lock();
+        try {
+            if (!loadingTasks) {
+                loadTasksLocked();
+            }
+            if (taskPositions.get(id, -1) >= 0) {
+                throw new IllegalArgumentException("Task id " + id + " already in use");
+            }
+            attachTask(task);
+            ProjectsManager registeredIn = manager;
+            if (registeredIn != null && !loadingTasks) {
+                registeredIn.fireTaskAdded(this, task);
+            }
+            return task;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several previously stored tasks in one step, each with its ID, as
+     * {@link #restoreTask} does for one. The IDs are checked before any task is added;
+     * the task list grows once, and when more tasks are added than the project has,
+     * the indexes are rebuilt once instead of updated task by task. The next task ID
+     * is not changed.
+     *
+     * @param ids      The IDs of the tasks, in the order of their attributes.
+     * @param restored The attributes of the tasks; a null last update stays unset.
+     * @return The restored tasks, in the order of the list.
+     * @throws IllegalArgumentException if an ID is already in use, in the project or
+     *         the list; no task is added then.
+     */
+    public List<Task> restoreTasks(int[] ids, List<TaskData> restored) {
+        if (ids.length != restored.size()) {
+            throw new IllegalArgumentException(ids.length + " IDs for " + restored.size() + " tasks");
+        }
+        List<Task> created = new ArrayList<>(restored.size());
+        for (int i = 0; i < ids.length; i++) {
+            TaskData data = restored.get(i);
+            Task task = new Task(data.getDescription(), ids[i], data.getPrio());
+            task.setState(data.getState());
+            if (data.getTakenBy() != null) {
+                task.setTakenBy(data.getTakenBy());
+            }
+            task.setLastUpdate(data.getLastUpdate());
+            created.add(task);
+        }
+
+        lock.writeLock().lock();
+        try {
+            loadTasksLocked();
+            IntIntMap batchIds = new IntIntMap(ids.length);
+            for (int id : ids) {
+                if (taskPositions.get(id, -1) >= 0 || batchIds.get(id, -1) >= 0) {
+                    throw new IllegalArgumentException("Task id " + id + " already in use");
+                }
+                batchIds.put(id, 0);
+            }
+            preserveVersion();
+            if (created.size() > tasks.size()) {
+                tasks.addAll(created);
+                rebuildTaskIndex();
+            }
+            else {
+                if (tasks instanceof ArrayList) {
+                    ((ArrayList<Task>) tasks).ensureCapacity(tasks.size() + created.size());
+                }
+                for (Task task : created) {
+                    attachTask(task);
+                }
+            }
+            taskSource = null;
+            ProjectsManager registeredIn = manager;
+            if (registeredIn != null) {
+                for (Task task : created) {
+                    registeredIn.fireTaskAdded(this, task);
+                }
+            }
+            return created;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a task to the task list and adds it to every index.
+     * The caller holds the write lock.
+     *
+     * @param task The task to add.
+     */
+    private void attachTask(Task task) {
+        preserveVersion();
+        modificationCount++;
+        taskPositions.put(task.getId(), tasks.size());
+        taskIndex.add(tasks.size(), task);
+        task.setOwner(this);
+        tasks.add(task);
+        sortedTasks.add(task);
+        noteTaskUpdate(task.getLastUpdate());
+        if (!loadingTasks) {
+            taskSource = null;
+        }
     }
 
     /**
@@ -193,50 +842,855 @@ public class Project implements Comparable<Project>, Serializable {
      * @return true if the task was successfully removed, false otherwise.
      */
     public boolean removeTask(Task task) {
-        return tasks.remove(task);
+        lock.writeLock().lock();
+        try {
+            if (task == null) {
+                return false;
+            }
+            loadTasksLocked();
+            int pos = taskPositions.get(task.getId(), -1);
+            if (pos < 0 || !tasks.get(pos).equals(task)) {
+                return false;
+            }
+            removeTaskAt(pos);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
-     * Gets the state of the project, which can be EMPTY, ONGOING, or COMPLETED.
+     * Removes the task with the given ID from the project.
      *
-     * @return The state of the project.
+     * @param id The ID of the task to be removed.
+     * @return true if a task with the ID was removed, false if there was none.
      */
-    public ProjectState getState() {
-        if (tasks.isEmpty()) {
-            return ProjectState.EMPTY;
+    public boolean removeTaskById(int id) {
+        lock.writeLock().lock();
+        try {
+            loadTasksLocked();
+            int pos = taskPositions.get(id, -1);
+            if (pos < 0) {
+                return false;
+            }
+            removeTaskAt(pos);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the task at a position by moving the last task into it,
+     * so the removal does not shift the rest of the list.
+     *
+     * @param pos The position of the task to remove.
+     */
+    private void removeTaskAt(int pos) {
+        preserveVersion();
+        modificationCount++;
+        Task removed = tasks.get(pos);
+        int lastPos = tasks.size() - 1;
+        taskIndex.remove(pos, removed);
+        sortedTasks.remove(removed);
+        if (pos != lastPos) {
+            Task last = tasks.get(lastPos);
+            taskIndex.remove(lastPos, last);
+            taskIndex.add(pos, last);
+            tasks.set(pos, last);
+            taskPositions.put(last.getId(), pos);
+        }
+        tasks.remove(lastPos);
+        taskPositions.remove(removed.getId());
+        removed.setOwner(null);
+        taskSource = null;
+        if (removed.getLastUpdate() != null && removed.getLastUpdate().equals(latestTaskUpdate)) {
+            latestTaskUpdateStale = true;
+        }
+        ProjectsManager registeredIn = manager;
+        if (registeredIn != null) {
+            registeredIn.fireTaskRemoved(this, removed);
+        }
+    }
+
+    /**
+     * Tells the manager's listeners that a task in the project changed.
+     * Called by the task at the end of every setter, with the write lock held.
+     *
+     * @param task The task that changed.
+     */
+    void taskChanged(Task task) {
+        if (positionOf(task) < 0) {
+            return;
+        }
+        modificationCount++;
+        taskSource = null;
+        if (task == updatingTask) {
+            updatingTaskChanged = true;
+            return;
+        }
+        ProjectsManager registeredIn = manager;
+        if (registeredIn != null) {
+            registeredIn.fireTaskChanged(this, task);
+        }
+    }
+
+    /**
+     * Starts a {@link Task#update} of a task in the project, which holds back the
+     * listeners until it ends. Called with the write lock held.
+     *
+     * @param task The task being updated.
+     * @return The task of an enclosing update, to be passed to {@link #endTaskUpdate}.
+     */
+    Task beginTaskUpdate(Task task) {
+        Task outer = updatingTask;
+        if (outer != task) {
+            updatingTask = task;
+            updatingTaskChanged = false;
+        }
+        return outer;
+    }
+
+    /**
+     * Ends a {@link Task#update}, telling the listeners about the task if it changed.
+     * Called with the write lock held.
+     *
+     * @param task  The task that was updated.
+     * @param outer The value {@link #beginTaskUpdate} returned.
+     */
+    void endTaskUpdate(Task task, Task outer) {
+        if (outer == task) {
+            return;
+        }
+        boolean changed = updatingTaskChanged;
+        updatingTask = outer;
+        updatingTaskChanged = outer != null;
+        if (changed) {
+            ProjectsManager registeredIn = manager;
+            if (registeredIn != null && positionOf(task) >= 0) {
+                registeredIn.fireTaskChanged(this, task);
+            }
+        }
+    }
+
+    private void fireProjectChanged() {
+        ProjectsManager registeredIn = manager;
+        if (registeredIn != null) {
+            registeredIn.fireProjectChanged(this);
+        }
+    }
+
+    /**
+     * Checks that a task in the project can take an ID, before anything is changed.
+     * Called by the task with the write lock held.
+     *
+     * @param task The task whose ID is about to change.
+     * @param id   The new ID.
+     * @throws IllegalArgumentException if another task in the project has the ID.
+     */
+    void checkTaskIdFree(Task task, int id) {
+        int pos = taskPositions.get(id, -1);
+        if (pos >= 0 && tasks.get(pos) != task) {
+            throw new IllegalArgumentException("Task id " + id + " already in use");
+        }
+    }
+
+    /**
+     * Tells the manager's listeners that a task in the project is about to change its
+     * ID, by reporting it removed while it still has the old one; the change that
+     * follows reports it under the new ID. Called by the task with the write lock held.
+     *
+     * @param task  The task whose ID is about to change.
+     * @param newId The new ID.
+     */
+    void taskIdChanging(Task task, int newId) {
+        ProjectsManager registeredIn = manager;
+        if (registeredIn != null && newId != task.getId() && positionOf(task) >= 0) {
+            registeredIn.fireTaskRemoved(this, task);
+        }
+    }
+
+    /**
+     * Updates the task ID index after a task in the project changed its ID, and raises
+     * the next task ID above it, so a task added later does not get the same one.
+     *
+     * @param task  The task that changed.
+     * @param oldId The task's ID before the change.
+     */
+    void taskIdChanged(Task task, int oldId) {
+        int pos = taskPositions.get(oldId, -1);
+        if (pos >= 0 && tasks.get(pos) == task) {
+            taskPositions.remove(oldId);
+            taskPositions.put(task.getId(), pos);
+            modificationCount++;
+            sortedTasks.add(task);
+            if (task.getId() >= nextTaskId) {
+                nextTaskId = task.getId() + 1;
+                fireProjectChanged();
+            }
+        }
+    }
+
+    /**
+     * Makes a task owned by this project the one in the task list again, before it is
+     * changed. A task is not in the list when the tasks were evicted while it was in
+     * use, and possibly loaded again as another object. The task then takes on the
+     * attributes of the object in the list and replaces it, so no change is lost
+     * through either reference. A task removed in the meantime loses its owner.
+     * Called by the task with the write lock held.
+     *
+     * @param task The task about to change.
+     */
+    void reattach(Task task) {
+        if (tasksLoaded && positionOf(task) >= 0) {
+            return;
+        }
+        loadTasksLocked();
+        int pos = taskPositions.get(task.getId(), -1);
+        if (pos < 0) {
+            task.setOwner(null);
+            return;
+        }
+        Task resident = tasks.get(pos);
+        if (resident == task) {
+            return;
+        }
+        // the attributes are equal afterwards, so only the sorted set holds the object itself
+        sortedTasks.remove(resident);
+        task.copyFrom(resident);
+        tasks.set(pos, task);
+        sortedTasks.add(task);
+    }
+
+    /**
+     * Takes a task in the project out of the sorted order before its priority,
+     * description or ID changes. The matching changed method puts it back.
+     *
+     * @param task The task about to change.
+     */
+    void taskSortKeyChanging(Task task) {
+        if (positionOf(task) >= 0) {
+            sortedTasks.remove(task);
+        }
+    }
+
+    /**
+     * Puts a task in the project back into the sorted order after its description changed.
+     *
+     * @param task           The task that changed.
+     * @param oldDescription The task's description before the change.
+     */
+    void taskDescriptionChanged(Task task, String oldDescription) {
+        if (positionOf(task) >= 0) {
+            sortedTasks.add(task);
+        }
+    }
+
+    /**
+     * Updates the state index after a task in the project changed state.
+     *
+     * @param task     The task that changed.
+     * @param oldState The task's state before the change.
+     */
+    void taskStateChanged(Task task, TaskState oldState) {
+        int pos = positionOf(task);
+        if (pos >= 0) {
+            taskIndex.stateChanged(pos, oldState, task.getState());
+        }
+    }
+
+    /**
+     * Updates the priority index after a task in the project changed priority.
+     *
+     * @param task    The task that changed.
+     * @param oldPrio The task's priority before the change.
+     */
+    void taskPrioChanged(Task task, TaskPrio oldPrio) {
+        int pos = positionOf(task);
+        if (pos >= 0) {
+            taskIndex.prioChanged(pos, oldPrio, task.getPrio());
+            sortedTasks.add(task);
+        }
+    }
+
+    /**
+     * Updates the taken-by index after a task in the project was taken.
+     *
+     * @param task       The task that changed.
+     * @param oldTakenBy The user who had taken the task before the change, or null.
+     */
+    void taskTakenByChanged(Task task, String oldTakenBy) {
+        int pos = positionOf(task);
+        if (pos >= 0) {
+            taskIndex.takenByChanged(pos, oldTakenBy, task.getTakenBy());
+        }
+    }
+
+    /**
+     * Updates the latest task update after a task in the project got a new
+     * last update date.
+     *
+     * @param task          The task that changed.
+     * @param oldLastUpdate The task's last update date before the change, or null.
+     */
+    void taskLastUpdateChanged(Task task, LocalDate oldLastUpdate) {
+        if (positionOf(task) < 0) {
+            return;
+        }
+        LocalDate newLastUpdate = task.getLastUpdate();
+        boolean movedBack = newLastUpdate == null
+                || (oldLastUpdate != null && newLastUpdate.isBefore(oldLastUpdate));
+        if (movedBack && oldLastUpdate != null && oldLastUpdate.equals(latestTaskUpdate)) {
+            // the latest date may have moved back, find it again when asked
+            latestTaskUpdateStale = true;
         }
         else {
-            boolean allTasksDone = true;
-            for (Task task : tasks) {
-                if (task.getState() != TaskState.DONE) {
-                    allTasksDone = false;
-                    break;
+            noteTaskUpdate(newLastUpdate);
+        }
+    }
+
+    /**
+     * Raises the latest task update to a date if it is later.
+     *
+     * @param lastUpdate A task's last update date, or null.
+     */
+    private void noteTaskUpdate(LocalDate lastUpdate) {
+        if (lastUpdate != null && (latestTaskUpdate == null || lastUpdate.isAfter(latestTaskUpdate))) {
+            latestTaskUpdate = lastUpdate;
+        }
+    }
+
+    /**
+     * Gets the position of a task in the task list.
+     *
+     * @param task The task.
+     * @return The task's position, or -1 if it is not in this project.
+     */
+    private int positionOf(Task task) {
+        int pos = taskPositions.get(task.getId(), -1);
+        return pos >= 0 && tasks.get(pos) == task ? pos : -1;
+    }
+
+    /**
+     * Rebuilds the task ID index, the secondary indexes and the aggregates from the task list.
+     */
+    private void rebuildTaskIndex() {
+        modificationCount++;
+        taskPositions = new IntIntMap(tasks.size());
+        taskIndex = new TaskIndex();
+        sortedTasks = new TreeSet<>(TASK_ORDER);
+        latestTaskUpdate = null;
+        latestTaskUpdateStale = false;
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            taskPositions.put(task.getId(), i);
+            taskIndex.add(i, task);
+            task.setOwner(this);
+            sortedTasks.add(task);
+            noteTaskUpdate(task.getLastUpdate());
+        }
+    }
+
+    /**
+     * Takes the read lock with the tasks loaded. Loading needs the write lock, so
+     * the read lock is given up while the tasks are loaded.
+     */
+    private void readLockLoaded() {
+        lock.readLock().lock();
+        while (!tasksLoaded) {
+            lock.readLock().unlock();
+            ensureTasksLoaded();
+            lock.readLock().lock();
+        }
+        noteTasksUsed();
+    }
+
+    /**
+     * Tells the task source that the loaded tasks are in use, so they are the last
+     * to be evicted.
+     */
+    private void noteTasksUsed() {
+        ITaskSource source = taskSource;
+        if (source != null) {
+            source.tasksUsed(this);
+        }
+    }
+
+    private void ensureTasksLoaded() {
+        if (!tasksLoaded) {
+            lock.writeLock().lock();
+            try {
+                loadTasksLocked();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Loads the tasks from the task source if they are not loaded.
+     * The caller holds the write lock.
+     *
+     * @throws UncheckedIOException if the task source cannot be read.
+     */
+    private void loadTasksLocked() {
+        if (tasksLoaded) {
+            return;
+        }
+        loadingTasks = true;
+        try {
+            taskSource.loadTasks(this);
+            tasksLoaded = true;
+        } catch (IOException e) {
+            tasks = new ArrayList<>();
+            rebuildTaskIndex();
+            throw new UncheckedIOException("Could not load the tasks of project " + id, e);
+        } finally {
+            loadingTasks = false;
+        }
+    }
+
+    /**
+     * Releases the loaded tasks, to be loaded again from the task source when next used.
+     * Tasks that have changed since they were loaded are kept, as are the tasks of a
+     * project that another thread is using. Task objects obtained before the eviction
+     * still belong to the project: changing one loads the tasks again and puts the
+     * object back in place of the one loaded for it.
+     *
+     * @return true if the tasks were released.
+     */
+    public boolean evictTasks() {
+        if (!lock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            if (!tasksLoaded || taskSource == null) {
+                return false;
+            }
+            // the tasks keep their owner, see reattach
+            tasks = new ArrayList<>();
+            rebuildTaskIndex();
+            tasksLoaded = false;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the source the tasks of the project can be loaded from unchanged.
+     *
+     * @return The task source, or null if the project was not restored with one or its
+     *         tasks have changed since.
+     */
+    public ITaskSource getTaskSource() {
+        return taskSource;
+    }
+
+    /**
+     * Tells whether the tasks of the project are in memory.
+     *
+     * @return true unless the tasks wait to be loaded from the task source.
+     */
+    public boolean isTasksLoaded() {
+        return tasksLoaded;
+    }
+
+    /**
+     * Gets the write lock of the project, which Task setters hold while they update
+     * the task and the project's indexes.
+     *
+     * @return The project's write lock.
+     */
+    Lock writeLock() {
+        return lock.writeLock();
+    }
+
+    /**
+     * Takes an immutable version of the project and its tasks as they are now.
+     * Tasks that have not changed since the last version are shared with it, and
+     * tasks still unchanged in the task source are not loaded.
+     *
+     * @return The current version of the project.
+     */
+    public ProjectSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return currentVersion();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the current version of the project, taking a new one if it changed since
+     * the last. The caller holds the read or the write lock.
+     *
+     * @return The current version.
+     */
+    private ProjectSnapshot currentVersion() {
+        SoftReference<ProjectSnapshot> ref = version;
+        ProjectSnapshot latest = ref != null ? ref.get() : null;
+        if (latest != null && latest.getModificationCount() == modificationCount) {
+            return latest;
+        }
+        ProjectSnapshot current;
+        ITaskSource source = taskSource;
+        if (source != null) {
+            current = ProjectSnapshot.ofSource(this, modificationCount, source);
+        }
+        else {
+            List<TaskSnapshot> previous = latest != null ? latest.getTasksIfDecoded() : null;
+            TaskSnapshot[] frozen = new TaskSnapshot[tasks.size()];
+            for (int i = 0; i < frozen.length; i++) {
+                // a change only moves the task it removes, so most positions still match
+                TaskSnapshot before = previous != null && i < previous.size() ? previous.get(i) : null;
+                frozen[i] = tasks.get(i).snapshot(before);
+            }
+            current = ProjectSnapshot.ofTasks(this, modificationCount, frozen);
+        }
+        // readers may race to set it, but they all set an equal version
+        version = new SoftReference<>(current);
+        return current;
+    }
+
+    /**
+     * Pins the current version of the project for a snapshot, without copying
+     * anything yet. The caller holds the read lock, and gets the version with
+     * {@link #pinnedVersion(VersionPin)} once it has let go of it.
+     *
+     * @return The pin.
+     */
+    VersionPin pinVersion() {
+        VersionPin pin = new VersionPin();
+        SoftReference<ProjectSnapshot> ref = version;
+        ProjectSnapshot latest = ref != null ? ref.get() : null;
+        if (latest != null && latest.getModificationCount() == modificationCount) {
+            pin.version = latest;
+        }
+        else {
+            pins.add(pin);
+        }
+        return pin;
+    }
+
+    /**
+     * Gets the version pinned by {@link #pinVersion()}: the one the next change kept,
+     * or, if there was no change since, the current one.
+     *
+     * @param pin The pin.
+     * @return The pinned version.
+     */
+    ProjectSnapshot pinnedVersion(VersionPin pin) {
+        ProjectSnapshot pinned = pin.version;
+        if (pinned != null) {
+            return pinned;
+        }
+        lock.readLock().lock();
+        try {
+            pinned = pin.version;
+            if (pinned == null) {
+                // a change would have filled the pin first, so the project is as it was
+                pinned = currentVersion();
+                pin.version = pinned;
+                pins.remove(pin);
+            }
+            return pinned;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps the current version for the snapshots that have pinned it, before the
+     * project changes. Called with the write lock held by every change to the
+     * project's attributes or tasks; costs nothing when no snapshot is waiting.
+     */
+    void preserveVersion() {
+        if (!pins.isEmpty()) {
+            ProjectSnapshot current = currentVersion();
+            for (VersionPin pin; (pin = pins.poll()) != null; ) {
+                pin.version = current;
+            }
+        }
+    }
+
+    /**
+     * Gets the read lock of the project, which {@link ProjectsManager#snapshot()}
+     * holds on every project at once while it pins their versions.
+     *
+     * @return The project's read lock.
+     */
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * The view of {@link #getTasksView()}, which reads the current task list under the
+     * read lock on every call. Its iterator takes the next task when asked whether
+     * there is one, so a removal between hasNext and next does not make next fail.
+     */
+    private final class TasksView extends AbstractList<Task> {
+        @Override
+        public Task get(int index) {
+            readLockLoaded();
+            try {
+                return tasks.get(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return getTaskCount();
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return new Iterator<Task>() {
+                private int cursor;
+                private Task next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null) {
+                        readLockLoaded();
+                        try {
+                            next = cursor < tasks.size() ? tasks.get(cursor) : null;
+                        } finally {
+                            lock.readLock().unlock();
+                        }
+                    }
+                    return next != null;
                 }
+
+                @Override
+                public Task next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Task task = next;
+                    next = null;
+                    cursor++;
+                    return task;
+                }
+            };
+        }
+    }
+
+    /**
+     * The tasks of {@link #streamTasks}, found one chunk of the sorted tasks at a time.
+     * Each chunk resumes after the sort key of the last task the previous one looked at,
+     * so tasks added or removed meanwhile do not shift the walk.
+     */
+    private final class MatchingTasks extends Spliterators.AbstractSpliterator<Task> {
+        private final ITaskMatcher matcher;
+        private final ArrayDeque<Task> matched = new ArrayDeque<>();
+        // a task with the sort key of the last task looked at, null before the first chunk
+        private Task resumeAfter;
+        private boolean walked;
+        // the index plan for the matcher, valid while the modification count is planned
+        private TaskQueryPlan plan;
+        private long planned = -1;
+
+        MatchingTasks(ITaskMatcher matcher) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Task> action) {
+            while (matched.isEmpty() && !walked) {
+                nextChunk();
+            }
+            Task task = matched.poll();
+            if (task == null) {
+                return false;
+            }
+            action.accept(task);
+            return true;
+        }
+
+        private void nextChunk() {
+            readLockLoaded();
+            try {
+                if (planned != modificationCount) {
+                    // the plan holds positions and index bit sets, which a change may have moved
+                    plan = TaskQueryPlan.plan(matcher, taskIndex, tasks.size());
+                    planned = modificationCount;
+                }
+                Iterable<Task> rest = resumeAfter == null ? sortedTasks : sortedTasks.tailSet(resumeAfter, false);
+                Task last = null;
+                int looked = 0;
+                int evaluations = 0;
+                for (Task task : rest) {
+                    if (looked == STREAM_CHUNK) {
+                        break;
+                    }
+                    looked++;
+                    last = task;
+                    boolean matches;
+                    if (plan == null) {
+                        evaluations++;
+                        matches = matcher.match(task);
+                    }
+                    else if (!plan.getCandidates().get(positionOf(task))) {
+                        matches = false;
+                    }
+                    else if (plan.isExact()) {
+                        matches = true;
+                    }
+                    else {
+                        evaluations++;
+                        matches = plan.matchesResidual(task);
+                    }
+                    if (matches) {
+                        matched.add(task);
+                    }
+                }
+                MATCHER_EVALUATIONS.add(evaluations);
+                if (looked < STREAM_CHUNK) {
+                    walked = true;
+                }
+                else {
+                    resumeAfter = new Task(last.getDescription(), last.getId(), last.getPrio());
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * A snapshot's hold on the version a project had when the snapshot was taken.
+     */
+    static final class VersionPin {
+        private volatile ProjectSnapshot version;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantReadWriteLock();
+        pins = new ConcurrentLinkedQueue<>();
+        tasksLoaded = true;
+        if (tasks == null) {
+            tasks = new ArrayList<>();
+        }
+        rebuildTaskIndex();
+    }
+
+    /**
+     * Gets the state of the project, which can be EMPTY, ONGOING, or COMPLETED.
+     *
+     * @return The state of the project.
+     */
+    public ProjectState getState() {
+        lock.readLock().lock();
+        try {
+            int taskCount = getTaskCountLocked();
+            if (taskCount == 0) {
+                return ProjectState.EMPTY;
             }
-            if (allTasksDone) {
+            else if (getTaskCountLocked(TaskState.DONE) == taskCount) {
                 return ProjectState.COMPLETED;
             }
             else {
                 return ProjectState.ONGOING;
             }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
+    /**
+     * Gets the number of tasks in the project.
+     *
+     * @return The number of tasks.
+     */
+    public int getTaskCount() {
+        lock.readLock().lock();
+        try {
+            return getTaskCountLocked();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int getTaskCountLocked() {
+        if (!tasksLoaded) {
+            int count = 0;
+            for (TaskState state : TaskState.values()) {
+                count += taskSource.getTaskCount(state);
+            }
+            return count;
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Gets the number of tasks in the project that are in a given state.
+     * Tasks that have not been given a state yet are counted as TO_DO.
+     *
+     * @param state The state to count.
+     * @return The number of tasks in the state.
+     */
+    public int getTaskCount(TaskState state) {
+        lock.readLock().lock();
+        try {
+            return getTaskCountLocked(state);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int getTaskCountLocked(TaskState state) {
+        if (!tasksLoaded) {
+            return taskSource.getTaskCount(state);
+        }
+        if (state == TaskState.TO_DO) {
+            return taskIndex.count(TaskState.TO_DO) + taskIndex.count(null);
+        }
+        return taskIndex.count(state);
+    }
+
     /**
      * Gets the date when the project was last updated.
      *
      * @return The last updated date of the project.
      */
     public LocalDate getLastUpdated() {
-        LocalDate lastUpdatedDate = created;
+        lock.readLock().lock();
+        try {
+            if (!tasksLoaded || !latestTaskUpdateStale) {
+                return latestOrCreated();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
 
-        for (Task task : tasks) {
-            LocalDate taskLastUpdated = task.getLastUpdate();
-            if (taskLastUpdated.isAfter(lastUpdatedDate)) {
-                lastUpdatedDate = taskLastUpdated;
+        // recomputing writes the aggregate, so it needs the write lock
+        lock.writeLock().lock();
+        try {
+            if (tasksLoaded && latestTaskUpdateStale) {
+                latestTaskUpdate = null;
+                for (Task task : tasks) {
+                    noteTaskUpdate(task.getLastUpdate());
+                }
+                latestTaskUpdateStale = false;
             }
+            return latestOrCreated();
+        } finally {
+            lock.writeLock().unlock();
         }
-        return lastUpdatedDate;
+    }
+
+    private LocalDate latestOrCreated() {
+        LocalDate latest = tasksLoaded ? latestTaskUpdate : taskSource.getLatestTaskUpdate();
+        if (latest != null && latest.isAfter(created)) {
+            return latest;
+        }
+        return created;
     }
 
     /**
@@ -280,13 +1734,18 @@ public class Project implements Comparable<Project>, Serializable {
      */
     @Override
     public String toString() {
-        return "Project{" +
-                "title='" + title + '\'' +
-                ", id=" + id +
-                ", nextTaskId=" + nextTaskId +
-                ", descr='" + descr + '\'' +
-                ", created=" + created +
-                ", tasks=" + tasks +
-                '}';
+        readLockLoaded();
+        try {
+            return "Project{" +
+                    "title='" + title + '\'' +
+                    ", id=" + id +
+                    ", nextTaskId=" + nextTaskId +
+                    ", descr='" + descr + '\'' +
+                    ", created=" + created +
+                    ", tasks=" + tasks +
+                    '}';
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 }
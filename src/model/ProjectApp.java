@@ -1,48 +1,118 @@
 package model;
+import io.PersistenceScheduler;
 import io.ProjectsFileIO;
+import io.ProjectsJournal;
+import metrics.Metrics;
+import metrics.MetricsEndpoint;
+import server.ProjectsServer;
 import ui.MainUI;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 public class ProjectApp {
 
     private static final String FILE_NAME = "projects.ser";
+    private static final String JOURNAL_FILE_NAME = "projects.journal";
+    // serves /metrics on this local port when set
+    private static final String METRICS_PORT_PROPERTY = "projects.metrics.port";
+
+    // the port to serve the HTTP API on instead of running the console UI, or -1
+    private final int serverPort;
+
+    public ProjectApp() {
+        this(-1);
+    }
+
+    public ProjectApp(int serverPort) {
+        this.serverPort = serverPort;
+    }
 
     public void run() throws Exception { // we do not catch all exceptions
 
         File projectsFile = new File(FILE_NAME);
         ProjectsManager projectsManager = new ProjectsManager();
-        boolean couldReadFile = false;
+        File journalFile = new File(JOURNAL_FILE_NAME);
+        ProjectsJournal journal = null;
+        PersistenceScheduler saver = null;
+
+        Metrics.registerMBean();
+        String metricsPort = System.getProperty(METRICS_PORT_PROPERTY);
+        MetricsEndpoint metricsEndpoint = metricsPort != null ? MetricsEndpoint.start(Integer.parseInt(metricsPort)) : null;
 
         try {
 
             if (projectsFile.exists()) {
-                List<Project> projects = ProjectsFileIO.deSerializeFromFile(projectsFile);
+                List<Project> projects = ProjectsFileIO.deSerializeLazily(projectsFile);
                 projectsManager.setProjects(projects);
-                couldReadFile = true;
             }
+            // changes are journaled as they happen, so a crash loses at most the last few
+            journal = ProjectsJournal.open(projectsFile, journalFile, projectsManager);
+            // and saved in the background now and then, so the journal stays short
+            saver = PersistenceScheduler.start(projectsFile, journal, projectsManager);
 
-            MainUI ui = new MainUI(projectsManager);
-            ui.mainLoop();
+            if (serverPort >= 0) {
+                serve(projectsManager, journal, saver);
+            }
+            else {
+                MainUI ui = new MainUI(projectsManager);
+                ui.mainLoop();
+            }
 
         } catch (FileNotFoundException | ClassNotFoundException e) {
             System.out.println("Could not load projects from file, please check the data file.");
             System.out.println("Continuing with empty manager.");
         }
 
-        // run method about to exit - save data
-        if(couldReadFile || !projectsFile.exists()) {
-            List<Project> projectsToSave = projectsManager.getProjects();
-            ProjectsFileIO.serializeToFile(projectsFile, projectsToSave);
+        // run method about to exit - save the last changes
+        if(saver != null) {
+            saver.close();
+        }
+        if(journal != null) {
+            journal.close();
+        }
+        if(metricsEndpoint != null) {
+            metricsEndpoint.close();
         }
         System.out.println("Application exits");
     }
 
+    /**
+     * Serves the HTTP API until the JVM is stopped, then stops the server and saves
+     * the last changes.
+     */
+    private void serve(ProjectsManager projectsManager, ProjectsJournal journal, PersistenceScheduler saver)
+            throws IOException, InterruptedException {
+        ProjectsServer server = ProjectsServer.start(projectsManager, new InetSocketAddress(serverPort));
+        System.out.println("Serving projects on port " + server.getPort());
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                saver.close();
+                journal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                stopped.countDown();
+            }
+        }));
+        stopped.await();
+    }
+
+    /**
+     * Runs the console UI, or with {@code --serve <port>} the HTTP API without a console.
+     */
     public static void main(String[] args) throws Exception {
 
-        ProjectApp app = new ProjectApp();
+        ProjectApp app = args.length == 2 && args[0].equals("--serve")
+                ? new ProjectApp(Integer.parseInt(args[1]))
+                : new ProjectApp();
         app.run();
     }
 }
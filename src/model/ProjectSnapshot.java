@@ -0,0 +1,223 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable version of a project and its tasks at one point in time, taken with
+ * {@link Project#snapshot()} or as part of a {@link ProjectsSnapshot}. Reading it
+ * never takes the project's lock, so it can be iterated at leisure while the project
+ * changes.
+ *
+ * A version whose tasks had not changed since they were loaded from a task source
+ * keeps only the source, and decodes the tasks from it the first time they are read.
+ */
+public final class ProjectSnapshot {
+
+    private static final TaskState[] STATES = TaskState.values();
+
+    private final int id;
+    private final String title;
+    private final String descr;
+    private final LocalDate created;
+    private final int nextTaskId;
+    private final long modificationCount;
+    // the unchanged source of the tasks, or null
+    private final ITaskSource taskSource;
+    // null until decoded from the task source
+    private volatile List<TaskSnapshot> tasks;
+    private final int[] stateCounts;
+    private final LocalDate latestTaskUpdate;
+
+    private ProjectSnapshot(Project project, long modificationCount, ITaskSource taskSource,
+                            List<TaskSnapshot> tasks, int[] stateCounts, LocalDate latestTaskUpdate) {
+        this.id = project.getId();
+        this.title = project.getTitle();
+        this.descr = project.getDescr();
+        this.created = project.getCreated();
+        this.nextTaskId = project.getNextTaskId();
+        this.modificationCount = modificationCount;
+        this.taskSource = taskSource;
+        this.tasks = tasks;
+        this.stateCounts = stateCounts;
+        this.latestTaskUpdate = latestTaskUpdate;
+    }
+
+    /**
+     * Takes a version of a project whose tasks are unchanged in a task source.
+     * The caller holds the project's lock.
+     */
+    static ProjectSnapshot ofSource(Project project, long modificationCount, ITaskSource taskSource) {
+        int[] stateCounts = new int[STATES.length];
+        for (TaskState state : STATES) {
+            stateCounts[state.ordinal()] = taskSource.getTaskCount(state);
+        }
+        return new ProjectSnapshot(project, modificationCount, taskSource, null,
+                stateCounts, taskSource.getLatestTaskUpdate());
+    }
+
+    /**
+     * Takes a version of a project with copies of its tasks. The caller holds the
+     * project's lock.
+     */
+    static ProjectSnapshot ofTasks(Project project, long modificationCount, TaskSnapshot[] tasks) {
+        int[] stateCounts = new int[STATES.length];
+        int latest = Task.NO_DATE;
+        for (TaskSnapshot t : tasks) {
+            stateCounts[t.state == 0 ? TaskState.TO_DO.ordinal() : t.state - 1]++;
+            latest = Math.max(latest, t.lastUpdate);
+        }
+        return new ProjectSnapshot(project, modificationCount, null,
+                Collections.unmodifiableList(Arrays.asList(tasks)), stateCounts,
+                latest == Task.NO_DATE ? null : LocalDate.ofEpochDay(latest));
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescr() {
+        return descr;
+    }
+
+    public LocalDate getCreated() {
+        return created;
+    }
+
+    public int getNextTaskId() {
+        return nextTaskId;
+    }
+
+    /**
+     * Gets the modification count the project had when this version was taken.
+     *
+     * @return The modification count, see {@link Project#getModificationCount()}.
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Gets the tasks of the project as they were, in the order of {@link Project#getTasks()}.
+     * Tasks kept in a task source are decoded on the first call, into a project of
+     * their own that nothing else refers to, so neither the live project nor the
+     * source's record of loaded projects is touched.
+     *
+     * @return An unmodifiable list of the tasks.
+     * @throws java.io.UncheckedIOException if the task source cannot be read.
+     */
+    public List<TaskSnapshot> getTasks() {
+        List<TaskSnapshot> decoded = tasks;
+        if (decoded == null) {
+            Project copy = Project.restore(id, title, descr, created, nextTaskId);
+            try {
+                taskSource.copyTasksTo(copy);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not load the tasks of project " + id, e);
+            }
+            List<TaskSnapshot> frozen = new ArrayList<>();
+            for (Task task : copy.getTasks()) {
+                frozen.add(task.snapshot(null));
+            }
+            decoded = Collections.unmodifiableList(frozen);
+            tasks = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Gets the tasks if they are already at hand, without decoding them.
+     *
+     * @return The tasks, or null if they are only in the task source.
+     */
+    List<TaskSnapshot> getTasksIfDecoded() {
+        return tasks;
+    }
+
+    /**
+     * Gets the source the tasks of this version can be loaded from.
+     *
+     * @return The task source, or null if the tasks had changed since they were loaded.
+     */
+    public ITaskSource getTaskSource() {
+        return taskSource;
+    }
+
+    /**
+     * Gets the number of tasks in the project.
+     *
+     * @return The number of tasks.
+     */
+    public int getTaskCount() {
+        int count = 0;
+        for (int c : stateCounts) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of tasks in a state, tasks without a state counted as TO_DO.
+     *
+     * @param state The state to count.
+     * @return The number of tasks in the state.
+     */
+    public int getTaskCount(TaskState state) {
+        return stateCounts[state.ordinal()];
+    }
+
+    /**
+     * Gets the latest last update date of the tasks.
+     *
+     * @return The latest date, or null if no task has one.
+     */
+    public LocalDate getLatestTaskUpdate() {
+        return latestTaskUpdate;
+    }
+
+    /**
+     * Gets the date when the project was last updated, as {@link Project#getLastUpdated()}.
+     *
+     * @return The last updated date of the project.
+     */
+    public LocalDate getLastUpdated() {
+        if (latestTaskUpdate != null && latestTaskUpdate.isAfter(created)) {
+            return latestTaskUpdate;
+        }
+        return created;
+    }
+
+    /**
+     * Gets the state of the project, as {@link Project#getState()}.
+     *
+     * @return The state of the project.
+     */
+    public ProjectState getState() {
+        int taskCount = getTaskCount();
+        if (taskCount == 0) {
+            return ProjectState.EMPTY;
+        }
+        return getTaskCount(TaskState.DONE) == taskCount ? ProjectState.COMPLETED : ProjectState.ONGOING;
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectSnapshot{" +
+                "title='" + title + '\'' +
+                ", id=" + id +
+                ", nextTaskId=" + nextTaskId +
+                ", descr='" + descr + '\'' +
+                ", created=" + created +
+                ", modificationCount=" + modificationCount +
+                '}';
+    }
+}
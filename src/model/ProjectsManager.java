@@ -1,15 +1,48 @@
 package model;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import metrics.Histogram;
+import metrics.Metrics;
 import model.exception.TitleNotUniqueException;
 
 /**
  * The `ProjectsManager` class is responsible for managing a collection of projects and offers a range of operations.
+ *
+ * The manager is safe for use from many threads. Lookups by ID and title never block;
+ * adding, removing and renaming projects are serialized by a manager-wide lock, and
+ * tasks are guarded by a lock per project (see {@link Project}).
  */
 public class ProjectsManager{
-    private int nextProjectId;
-    private List<Project> projects = new ArrayList<>();
+    private static final Comparator<Project> BY_ID = Comparator.comparingInt(Project::getId);
+    private static final Histogram ADD_PROJECT_LATENCY = Metrics.latency("projects.addProject");
+    private static final Histogram FIND_PROJECTS_LATENCY = Metrics.latency("projects.findProjects");
+    private static final Histogram FIND_PROJECTS_RESULTS = Metrics.histogram("projects.findProjects.results");
+    private static final Histogram GET_PROJECT_BY_ID_LATENCY = Metrics.latency("projects.getProjectById");
+    private static final Histogram SNAPSHOT_LATENCY = Metrics.latency("projects.snapshot");
+
+    private final AtomicInteger nextProjectId = new AtomicInteger();
+    private final Map<Integer, Project> projectsById = new ConcurrentHashMap<>();
+    private final Map<String, Project> projectsByTitle = new ConcurrentHashMap<>();
+    // guards titleTrigrams, and makes title checks and index updates atomic for writers
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TitleTrigramIndex titleTrigrams = new TitleTrigramIndex();
+    private final Collection<Project> projectsView = Collections.unmodifiableCollection(projectsById.values());
+    private final List<IProjectsListener> listeners = new CopyOnWriteArrayList<>();
+    private final TaskQueryCache taskQueries =
+            new TaskQueryCache(TaskQueryCache.DEFAULT_MAX_ENTRIES, TaskQueryCache.DEFAULT_MAX_TASKS);
 
     /**
      * Constructs a `ProjectsManager` with the default settings.
@@ -25,38 +58,118 @@ public class ProjectsManager{
     /**
      * Gets a copy of the list of projects.
      *
-     * @return A list of projects.
+     * @return A list of projects, ordered by ID.
      */
     public List<Project> getProjects() {
-        if (projects == null) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(projects);
+        List<Project> projects = new ArrayList<>(projectsById.values());
+        projects.sort(BY_ID);
+        return projects;
     }
 
     /**
-     * Sets the list of projects with a new list.
+     * Takes an immutable, consistent view of every project and its tasks as they are
+     * now, for reports and saves that must not see changes made while they run.
      *
-     * @param incomingProjects The new list of projects to set.
+     * The projects are only locked while their current versions are pinned, which
+     * copies nothing. Writers then carry on at once: the first change to a pinned
+     * project copies its version before it is made, and versions of unchanged
+     * projects are shared with earlier snapshots.
+     *
+     * @return The snapshot, with the projects ordered by ID.
      */
-    public void setProjects(List<Project> incomingProjects){
-        if(projects != null){
-            projects.clear();
-        }
-        else
-        {
-            projects = new ArrayList<>();
+    public ProjectsSnapshot snapshot() {
+        long start = Metrics.start();
+        List<Project> projects;
+        List<Project.VersionPin> pins;
+        lock.readLock().lock();
+        try {
+            projects = getProjects();
+            pins = new ArrayList<>(projects.size());
+            // every project is read-locked at once, so no change is in one project and not in another
+            int locked = 0;
+            try {
+                for (Project p : projects) {
+                    p.readLock().lock();
+                    locked++;
+                }
+                for (Project p : projects) {
+                    pins.add(p.pinVersion());
+                }
+            } finally {
+                for (int i = 0; i < locked; i++) {
+                    projects.get(i).readLock().unlock();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
         }
 
-        if (incomingProjects != null){
-            projects.addAll(incomingProjects);
+        List<ProjectSnapshot> versions = new ArrayList<>(projects.size());
+        for (int i = 0; i < projects.size(); i++) {
+            versions.add(projects.get(i).pinnedVersion(pins.get(i)));
         }
+        ProjectsSnapshot snapshot = new ProjectsSnapshot(versions);
+        SNAPSHOT_LATENCY.recordSince(start);
+        return snapshot;
+    }
 
-        if (projects.isEmpty()){
-            nextProjectId = 1;
-        }
-        else {
-            nextProjectId = getHighestId() + 1;
+    /**
+     * Gets a read-only view of the projects, in no particular order. Unlike
+     * {@link #getProjects()} nothing is copied; the view follows later changes, and
+     * its iterators never throw {@link java.util.ConcurrentModificationException}
+     * when projects are added or removed while they are in use.
+     *
+     * @return A read-only view of the projects.
+     */
+    public Collection<Project> getProjectsView() {
+        return projectsView;
+    }
+
+    /**
+     * Registers a listener that is told about every change to the projects and their tasks.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(IProjectsListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(IProjectsListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(IProjectsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the list of projects with a new list. Listeners are told that every old
+     * project was removed and every new one added.
+     *
+     * @param incomingProjects The new list of projects to set.
+     */
+    public void setProjects(List<Project> incomingProjects){
+        lock.writeLock().lock();
+        try {
+            for (Project p : projectsById.values()){
+                p.setManager(null);
+                fireProjectRemoved(p);
+            }
+            projectsById.clear();
+            projectsByTitle.clear();
+            titleTrigrams.clear();
+            taskQueries.clear();
+            nextProjectId.set(1);
+
+            if (incomingProjects != null){
+                for (Project p : incomingProjects){
+                    register(p);
+                    fireProjectAdded(p);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -67,16 +180,17 @@ public class ProjectsManager{
      * @return `true` if the title is unique; otherwise, `false`.
      */
     public boolean isTitleUnique(String title){
-        if(projects == null){
-            return true;
-        }
+        return !projectsByTitle.containsKey(title);
+    }
 
-        for (Project p : projects){
-            if (p.getTitle().equals(title)){
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Gets the project with a title.
+     *
+     * @param title The title of the project.
+     * @return The project with the title, or null if there is none.
+     */
+    public Project getProjectByTitle(String title){
+        return projectsByTitle.get(title);
     }
 
     /**
@@ -88,15 +202,55 @@ public class ProjectsManager{
      * @throws TitleNotUniqueException if the title is not unique.
      */
     public Project addProject(String title, String description) throws TitleNotUniqueException{
-        if(!isTitleUnique(title)){
-            throw new TitleNotUniqueException("Titel ej unik!");
+        long start = Metrics.start();
+        lock.writeLock().lock();
+        try {
+            if(!isTitleUnique(title)){
+                throw new TitleNotUniqueException("Titel ej unik!");
+            }
+
+            Project newP = new   Project(title, description, nextProjectId.getAndIncrement());
+            register(newP);
+            fireProjectAdded(newP);
+
+            return newP;
+        } finally {
+            lock.writeLock().unlock();
+            ADD_PROJECT_LATENCY.recordSince(start);
         }
+    }
 
-        Project newP = new   Project(title, description, nextProjectId);
-        projects.add(newP);
-        nextProjectId++;
+    /**
+     * Adds several new projects in one step. The titles are checked before any project
+     * is added, and the projects get consecutive IDs in the map's iteration order.
+     *
+     * @param descriptionsByTitle The description of each new project by its title.
+     * @return The newly added projects, in the map's iteration order.
+     * @throws TitleNotUniqueException if a title is already in use; no project is added then.
+     */
+    public List<Project> addProjects(Map<String, String> descriptionsByTitle) throws TitleNotUniqueException{
+        lock.writeLock().lock();
+        try {
+            for (String title : descriptionsByTitle.keySet()){
+                if(!isTitleUnique(title)){
+                    throw new TitleNotUniqueException("Titel ej unik!");
+                }
+            }
 
-        return newP;
+            int id = nextProjectId.getAndAdd(descriptionsByTitle.size());
+            List<Project> added = new ArrayList<>(descriptionsByTitle.size());
+            for (Map.Entry<String, String> entry : descriptionsByTitle.entrySet()){
+                Project newP = new Project(entry.getKey(), entry.getValue(), id++);
+                register(newP);
+                added.add(newP);
+            }
+            for (Project p : added){
+                fireProjectAdded(p);
+            }
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -105,8 +259,22 @@ public class ProjectsManager{
      * @param project The `Project` object to be removed.
      */
     public void removeProject(Project project){
-        if (projects != null && project != null){
-            projects.remove(project);
+        if (project == null){
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // projects are equal by title, so the title index finds the registered one
+            Project registered = projectsByTitle.remove(project.getTitle());
+            if (registered != null){
+                projectsById.remove(registered.getId());
+                titleTrigrams.remove(registered, registered.getTitle());
+                registered.setManager(null);
+                taskQueries.invalidate(registered);
+                fireProjectRemoved(registered);
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -117,50 +285,246 @@ public class ProjectsManager{
      * @return The `Project` object with the specified ID, or `null` if not found.
      */
     public Project getProjectById(int id){
-        if(projects != null){
-            for (Project p : projects){
-                if (p.getId() == id){
-                    return p;
-                }
-            }
-        }
-        return null;
+        long start = Metrics.start();
+        Project found = projectsById.get(id);
+        GET_PROJECT_BY_ID_LATENCY.recordSince(start);
+        return found;
     }
 
     /**
      * Finds projects that contain a specific substring in their title.
+     * Strings of three or more characters are looked up in a trigram index, shorter
+     * ones are matched against every title.
      *
      * @param tString The substring to search for in project titles.
-     * @return A list of projects that match the search criteria.
+     * @return A list of projects that match the search criteria, ordered by ID.
      */
     public List<Project> findProjects(String tString){
-        List<Project> foundProjects = new ArrayList<>();
-        if (projects != null){
-            for (Project p : projects){
-                if (p.getTitle().contains(tString)){
-                    foundProjects.add(p);
+        long start = Metrics.start();
+        List<Project> foundProjects;
+        lock.readLock().lock();
+        try {
+            foundProjects = titleTrigrams.find(tString);
+            if (foundProjects == null){
+                foundProjects = new ArrayList<>();
+                for (Project p : projectsById.values()){
+                    if (p.getTitle().contains(tString)){
+                        foundProjects.add(p);
+                    }
                 }
+                foundProjects.sort(BY_ID);
             }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (start != 0){
+            FIND_PROJECTS_RESULTS.record(foundProjects.size());
+            FIND_PROJECTS_LATENCY.recordSince(start);
         }
         return foundProjects;
     }
 
     /**
-     * Retrieves the highest project ID among all projects.
+     * Gets a lazy stream of the projects that contain a specific substring in their title,
+     * in no particular order. Titles are only checked as the stream is consumed, so
+     * short-circuiting operations such as {@code limit} or {@code findFirst} stop the scan.
+     * Like {@link #getProjectsView()}, the stream tolerates concurrent changes.
+     *
+     * @param tString The substring to search for in project titles.
+     * @return A stream of the matching projects.
+     */
+    public Stream<Project> streamProjects(String tString){
+        return projectsById.values().stream().filter(p -> p.getTitle().contains(tString));
+    }
+
+    /**
+     * Gives a registered project a new ID and updates the ID index in the same step.
+     * Called by {@link Project#setId(int)}. Listeners are told that the project was
+     * removed under its old ID and added under the new one.
+     *
+     * @param project The project getting the new ID.
+     * @param newId The new ID.
+     * @throws IllegalArgumentException if another project already has the new ID.
+     */
+    void changeProjectId(Project project, int newId){
+        lock.writeLock().lock();
+        try {
+            int oldId = project.getId();
+            if (projectsById.get(oldId) != project){
+                // removed from the manager in the meantime
+                project.assignId(newId);
+                return;
+            }
+            if (oldId == newId){
+                return;
+            }
+            if (projectsById.containsKey(newId)){
+                throw new IllegalArgumentException("Project id " + newId + " already in use");
+            }
+            fireProjectRemoved(project);
+            projectsById.remove(oldId);
+            project.assignId(newId);
+            projectsById.put(newId, project);
+            nextProjectId.accumulateAndGet(newId + 1, Math::max);
+            fireProjectAdded(project);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Renames a registered project and updates the title index in the same step.
+     * Called by {@link Project#setTitle(String)}.
+     *
+     * @param project The project being renamed.
+     * @param newTitle The new title.
+     * @throws TitleNotUniqueException if another project already has the new title.
+     */
+    void renameProject(Project project, String newTitle) throws TitleNotUniqueException{
+        lock.writeLock().lock();
+        try {
+            String oldTitle = project.getTitle();
+            if (oldTitle.equals(newTitle)){
+                return;
+            }
+            if (!isTitleUnique(newTitle)){
+                throw new TitleNotUniqueException("Titel ej unik!");
+            }
+            projectsByTitle.remove(oldTitle);
+            projectsByTitle.put(newTitle, project);
+            titleTrigrams.remove(project, oldTitle);
+            titleTrigrams.add(project, newTitle);
+            project.assignTitle(newTitle);
+            fireProjectChanged(project);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a previously stored project, with its ID and tasks, to the manager, for
+     * example when replaying a journal. The next project ID is raised above its ID.
+     *
+     * @param project The project to add, created with {@link Project#restore}.
+     * @throws TitleNotUniqueException if the title is already in use.
+     * @throws IllegalArgumentException if the ID is already in use.
+     */
+    public void restoreProject(Project project) throws TitleNotUniqueException{
+        lock.writeLock().lock();
+        try {
+            if (!isTitleUnique(project.getTitle())){
+                throw new TitleNotUniqueException("Titel ej unik!");
+            }
+            if (projectsById.containsKey(project.getId())){
+                throw new IllegalArgumentException("Project id " + project.getId() + " already in use");
+            }
+            register(project);
+            fireProjectAdded(project);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several previously stored projects in one step, for example when importing
+     * them. The titles are checked before any project is added. A project keeps its ID
+     * unless the manager or an earlier project of the list already has it; it gets the
+     * next free ID then. The next project ID is raised above every ID added.
      *
-     * @return The highest project ID, or 0 if no projects exist.
+     * @param restored The projects to add, created with {@link Project#restore}.
+     * @throws TitleNotUniqueException if a title is already in use; no project is added then.
      */
-    private int getHighestId(){
-        int highest = 0;
+    public void restoreProjects(List<Project> restored) throws TitleNotUniqueException{
+        lock.writeLock().lock();
+        try {
+            Set<String> titles = new HashSet<>();
+            for (Project p : restored){
+                if(!isTitleUnique(p.getTitle()) || !titles.add(p.getTitle())){
+                    throw new TitleNotUniqueException("Titel ej unik!");
+                }
+            }
 
-        if (projects != null){
-            for (Project p : projects){
-                if (p.getId() > highest){
-                    highest = p.getId();
+            Set<Integer> ids = new HashSet<>();
+            List<Project> renumbered = new ArrayList<>();
+            for (Project p : restored){
+                if (projectsById.containsKey(p.getId()) || !ids.add(p.getId())){
+                    renumbered.add(p);
+                }
+                else {
+                    nextProjectId.accumulateAndGet(p.getId() + 1, Math::max);
                 }
             }
+            for (Project p : renumbered){
+                p.assignId(nextProjectId.getAndIncrement());
+            }
+            for (Project p : restored){
+                register(p);
+            }
+            for (Project p : restored){
+                fireProjectAdded(p);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the cache of findTasks results for the projects in the manager.
+     *
+     * @return The cache.
+     */
+    TaskQueryCache getTaskQueryCache(){
+        return taskQueries;
+    }
+
+    void fireProjectAdded(Project project){
+        for (IProjectsListener l : listeners){
+            l.projectAdded(project);
+        }
+    }
+
+    void fireProjectChanged(Project project){
+        for (IProjectsListener l : listeners){
+            l.projectChanged(project);
         }
-        return highest;
+    }
+
+    void fireProjectRemoved(Project project){
+        for (IProjectsListener l : listeners){
+            l.projectRemoved(project);
+        }
+    }
+
+    void fireTaskAdded(Project project, Task task){
+        for (IProjectsListener l : listeners){
+            l.taskAdded(project, task);
+        }
+    }
+
+    void fireTaskChanged(Project project, Task task){
+        for (IProjectsListener l : listeners){
+            l.taskChanged(project, task);
+        }
+    }
+
+    void fireTaskRemoved(Project project, Task task){
+        for (IProjectsListener l : listeners){
+            l.taskRemoved(project, task);
+        }
+    }
+
+    /**
+     * Adds a project to the id and title indexes and keeps the next project ID
+     * above the highest registered ID. The caller holds the write lock.
+     *
+     * @param project The project to register.
+     */
+    private void register(Project project){
+        projectsById.put(project.getId(), project);
+        projectsByTitle.put(project.getTitle(), project);
+        titleTrigrams.add(project, project.getTitle());
+        project.setManager(this);
+        nextProjectId.accumulateAndGet(project.getId() + 1, Math::max);
     }
 
     /**
@@ -173,7 +537,7 @@ public class ProjectsManager{
     public String toString() {
         return "ProjectsManager{" +
                 "nextProjectId=" + nextProjectId +
-                ", projects=" + projects +
+                ", projects=" + projectsById.values() +
                 '}';
     }
 }
@@ -0,0 +1,44 @@
+package model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, consistent view of all projects of a manager at one point in time,
+ * taken with {@link ProjectsManager#snapshot()}. Every change made before the snapshot
+ * is in it and none made after, in every project alike.
+ */
+public final class ProjectsSnapshot {
+
+    private final List<ProjectSnapshot> projects;
+    private final Map<Integer, ProjectSnapshot> projectsById;
+
+    ProjectsSnapshot(List<ProjectSnapshot> projects) {
+        this.projects = Collections.unmodifiableList(projects);
+        this.projectsById = new HashMap<>(projects.size() * 2);
+        for (ProjectSnapshot p : projects) {
+            projectsById.put(p.getId(), p);
+        }
+    }
+
+    /**
+     * Gets the projects as they were.
+     *
+     * @return An unmodifiable list of the projects, ordered by ID.
+     */
+    public List<ProjectSnapshot> getProjects() {
+        return projects;
+    }
+
+    /**
+     * Gets a project as it was by its ID.
+     *
+     * @param id The ID of the project.
+     * @return The project, or null if there was no project with the ID.
+     */
+    public ProjectSnapshot getProjectById(int id) {
+        return projectsById.get(id);
+    }
+}
@@ -0,0 +1,55 @@
+package model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one shared copy of each distinct string of a kind, such as assignee names,
+ * so the many tasks holding the same value all refer to the same String instance.
+ * Every assignee stored in a task is the copy from {@link #ASSIGNEES}, whether it was
+ * set by a claim or read from a file, so assignees can be compared by identity.
+ * Strings are never removed; the dictionary is meant for the few hundred names of
+ * the users, not for free text such as task descriptions.
+ */
+public final class StringDictionary {
+
+    /** The dictionary of the users who take tasks. */
+    public static final StringDictionary ASSIGNEES = new StringDictionary();
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    private StringDictionary() {}
+
+    /**
+     * Gets the dictionary's copy of a string, adding the string if it is new.
+     *
+     * @param s The string, or null.
+     * @return The shared copy of the string, or null.
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String shared = strings.putIfAbsent(s, s);
+        return shared != null ? shared : s;
+    }
+
+    /**
+     * Gets the dictionary's copy of a string without adding it, for strings that
+     * only look something up, such as names in queries from remote clients.
+     *
+     * @param s The string, or null.
+     * @return The shared copy of the string, or null if the dictionary does not have it.
+     */
+    public String lookup(String s) {
+        return s == null ? null : strings.get(s);
+    }
+
+    /**
+     * Gets the number of distinct strings in the dictionary.
+     *
+     * @return The number of strings.
+     */
+    public int size() {
+        return strings.size();
+    }
+}
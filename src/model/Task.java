@@ -1,22 +1,60 @@
 package model;
 
 import java.time.LocalDate;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
 
 
 /**
  * A class representing a task with a description, ID, priority, and other attributes.
+ * The setters hold the write lock of the project that owns the task.
+ *
+ * To keep millions of tasks small the attributes are stored as primitives: priority
+ * and state as ordinal codes, the last update as an epoch day, and the assignee as the
+ * dictionary's single copy of the name. The serialized form keeps the original fields.
  */
 public class Task implements Comparable<Task>, Serializable {
+    private static final long serialVersionUID = -8105030904644994042L;
+    private static final AtomicIntegerFieldUpdater<Task> VERSION =
+            AtomicIntegerFieldUpdater.newUpdater(Task.class, "version");
+
+    // the fields written by earlier versions, which stored the attributes as objects
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("takenBy", String.class),
+            new ObjectStreamField("state", TaskState.class),
+            new ObjectStreamField("lastUpdate", LocalDate.class),
+            new ObjectStreamField("prio", TaskPrio.class),
+    };
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+    // the epoch day standing for no last update
+    static final int NO_DATE = Integer.MIN_VALUE;
+
     private String description;
     private int id;
-    private String takenBy;
+    private volatile String takenBy;
+
+    // ordinal + 1, 0 for none
+    private byte state;
 
-    private TaskState state;
+    private int lastUpdate = NO_DATE;
 
-    private LocalDate lastUpdate;
+    // ordinal + 1, 0 for none
+    private byte prio;
 
-    private TaskPrio prio;
+    // bumped by 2 on every change, odd while a claim is being applied
+    private transient volatile int version;
+
+    // the project whose indexes must follow changes to this task
+    private transient volatile Project owner;
 
     /**
      * Constructor for creating a new Task.
@@ -28,7 +66,7 @@ public class Task implements Comparable<Task>, Serializable {
     Task(String description, int id, TaskPrio prio) {
         this.description = description;
         this.id = id;
-        this.prio = prio;
+        this.prio = prioCode(prio);
     }
 
     /**
@@ -64,7 +102,7 @@ public class Task implements Comparable<Task>, Serializable {
      * @return The state of the task.
      */
     public TaskState getState() {
-        return state;
+        return state == 0 ? null : STATES[state - 1];
     }
 
     /**
@@ -73,7 +111,7 @@ public class Task implements Comparable<Task>, Serializable {
      * @return The date of the last update.
      */
     public LocalDate getLastUpdate() {
-        return lastUpdate;
+        return lastUpdate == NO_DATE ? null : LocalDate.ofEpochDay(lastUpdate);
     }
 
     /**
@@ -82,7 +120,7 @@ public class Task implements Comparable<Task>, Serializable {
      * @return The priority of the task.
      */
     public TaskPrio getPrio() {
-        return prio;
+        return prio == 0 ? null : PRIOS[prio - 1];
     }
 
     /**
@@ -91,16 +129,49 @@ public class Task implements Comparable<Task>, Serializable {
      * @param description The new description for the task.
      */
     public void setDescription(String description) {
-        this.description = description;
+        Project locked = lockOwner();
+        try {
+            String oldDescription = this.description;
+            if (locked != null) {
+                locked.taskSortKeyChanging(this);
+            }
+            this.description = description;
+            if (locked != null) {
+                locked.taskDescriptionChanged(this, oldDescription);
+            }
+            changed(locked);
+        } finally {
+            if (locked != null) {
+                locked.writeLock().unlock();
+            }
+        }
     }
 
     /**
      * Set the unique ID of the task.
      *
      * @param id The new ID for the task.
+     * @throws IllegalArgumentException if another task in the project has the ID.
      */
     public void setId(int id) {
-        this.id = id;
+        Project locked = lockOwner();
+        try {
+            int oldId = this.id;
+            if (locked != null) {
+                locked.checkTaskIdFree(this, id);
+                locked.taskIdChanging(this, id);
+                locked.taskSortKeyChanging(this);
+            }
+            this.id = id;
+            if (locked != null) {
+                locked.taskIdChanged(this, oldId);
+            }
+            changed(locked);
+        } finally {
+            if (locked != null) {
+                locked.writeLock().unlock();
+            }
+        }
     }
 
     /**
@@ -110,11 +181,96 @@ public class Task implements Comparable<Task>, Serializable {
      * @throws IllegalStateException if the task is already taken.
      */
     public void setTakenBy(String takenBy) {
-        if (this.takenBy != null) {
+        if (!tryClaim(takenBy)) {
             throw new IllegalStateException("Aktiviteten upptagen");
         }
-        this.takenBy = takenBy;
-        this.lastUpdate = LocalDate.now();
+    }
+
+    /**
+     * Claim the task for a user if nobody has taken it yet. The claim is decided by a
+     * compare-and-set on the task's version, so competing claimers never wait for each
+     * other and only the winner touches the project's lock to update its index.
+     *
+     * @param takenBy The user claiming the task.
+     * @return true if the claim succeeded, false if the task is already taken or
+     *         another claim on it is in progress.
+     */
+    public boolean tryClaim(String takenBy) {
+        while (true) {
+            int current = version;
+            // an odd version is a claim being applied, which can only succeed
+            if (this.takenBy != null || (current & 1) != 0) {
+                return false;
+            }
+            if (VERSION.compareAndSet(this, current, current + 1)) {
+                return applyClaim(takenBy, current + 1, false);
+            }
+        }
+    }
+
+    /**
+     * Claim the task for a user, but only if the task has not changed since the given
+     * version was read with {@link #getVersion()}. This rejects claims made on stale data.
+     * A setter moves the version on only at the end of its change, so the version is
+     * checked again under the owner's lock, after any change in progress has finished.
+     *
+     * @param takenBy         The user claiming the task.
+     * @param expectedVersion The version the claimer last saw.
+     * @return true if the claim succeeded, false if the task is taken or has changed.
+     */
+    public boolean tryClaim(String takenBy, int expectedVersion) {
+        if ((expectedVersion & 1) != 0 || this.takenBy != null) {
+            return false;
+        }
+        if (!VERSION.compareAndSet(this, expectedVersion, expectedVersion + 1)) {
+            return false;
+        }
+        return applyClaim(takenBy, expectedVersion + 1, true);
+    }
+
+    /**
+     * Get the version of the task, which changes every time the task is modified.
+     * An even version means no claim is in progress.
+     *
+     * @return The version of the task.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Write a claim won by moving the version to odd, then make the version even again.
+     * A task whose project had let go of it takes on the project's current attributes
+     * when it is locked, so the claim is checked again then.
+     *
+     * @param takenBy        The user who won the claim.
+     * @param claimedVersion The odd version the claim moved the task to.
+     * @param unchanged      Whether the claim fails if a setter changed the task while
+     *                       the claim waited for the lock.
+     * @return true if the claim was written, false if the task turned out to be taken
+     *         or, when it must be unchanged, changed.
+     */
+    private boolean applyClaim(String takenBy, int claimedVersion, boolean unchanged) {
+        Project locked = lockOwner();
+        try {
+            if (this.takenBy != null || (unchanged && version != claimedVersion)) {
+                return false;
+            }
+            this.takenBy = StringDictionary.ASSIGNEES.intern(takenBy);
+            if (locked != null) {
+                locked.taskTakenByChanged(this, null);
+            }
+            assignLastUpdate(locked, LocalDate.now());
+            if (locked != null) {
+                locked.taskChanged(this);
+            }
+            return true;
+        } finally {
+            if (locked != null) {
+                locked.writeLock().unlock();
+            }
+            VERSION.incrementAndGet(this);
+        }
     }
 
     /**
@@ -123,8 +279,20 @@ public class Task implements Comparable<Task>, Serializable {
      * @param state The new state for the task.
      */
     public void setState(TaskState state) {
-        this.state = state;
-        this.lastUpdate = LocalDate.now();
+        Project locked = lockOwner();
+        try {
+            TaskState oldState = getState();
+            this.state = state == null ? 0 : (byte) (state.ordinal() + 1);
+            if (locked != null) {
+                locked.taskStateChanged(this, oldState);
+            }
+            assignLastUpdate(locked, LocalDate.now());
+            changed(locked);
+        } finally {
+            if (locked != null) {
+                locked.writeLock().unlock();
+            }
+        }
     }
 
     /**
@@ -133,7 +301,15 @@ public class Task implements Comparable<Task>, Serializable {
      * @param lastUpdate The new date of the last update.
      */
     public void setLastUpdate(LocalDate lastUpdate) {
-        this.lastUpdate = lastUpdate;
+        Project locked = lockOwner();
+        try {
+            assignLastUpdate(locked, lastUpdate);
+            changed(locked);
+        } finally {
+            if (locked != null) {
+                locked.writeLock().unlock();
+            }
+        }
     }
 
     /**
@@ -142,8 +318,169 @@ public class Task implements Comparable<Task>, Serializable {
      * @param prio The new priority for the task.
      */
     public void setPrio(TaskPrio prio) {
-        this.prio = prio;
-        this.lastUpdate = LocalDate.now();
+        Project locked = lockOwner();
+        try {
+            TaskPrio oldPrio = getPrio();
+            if (locked != null) {
+                locked.taskSortKeyChanging(this);
+            }
+            this.prio = prioCode(prio);
+            if (locked != null) {
+                locked.taskPrioChanged(this, oldPrio);
+            }
+            assignLastUpdate(locked, LocalDate.now());
+            changed(locked);
+        } finally {
+            if (locked != null) {
+                locked.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies several changes to the task as one step. The owner's lock is held
+     * throughout, so readers see all of the changes or none, and the owner's listeners
+     * are told about the task once, after the last change.
+     *
+     * @param changes Calls the setters of this task.
+     */
+    public void update(Consumer<Task> changes) {
+        Project locked = lockOwner();
+        if (locked == null) {
+            changes.accept(this);
+            return;
+        }
+        try {
+            Task outer = locked.beginTaskUpdate(this);
+            try {
+                changes.accept(this);
+            } finally {
+                locked.endTaskUpdate(this, outer);
+            }
+        } finally {
+            locked.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the date of the last update and updates the owner's aggregate.
+     * The caller holds the owner's lock.
+     *
+     * @param locked     The locked owner, or null.
+     * @param lastUpdate The new date of the last update.
+     */
+    private void assignLastUpdate(Project locked, LocalDate lastUpdate) {
+        LocalDate oldLastUpdate = getLastUpdate();
+        this.lastUpdate = lastUpdate == null ? NO_DATE : Math.toIntExact(lastUpdate.toEpochDay());
+        if (locked != null) {
+            locked.taskLastUpdateChanged(this, oldLastUpdate);
+        }
+    }
+
+    /**
+     * Finishes a change made under the owner's lock: moves the version on and
+     * tells the owner, which passes the change on to the manager's listeners.
+     *
+     * @param locked The locked owner, or null.
+     */
+    private void changed(Project locked) {
+        VERSION.addAndGet(this, 2);
+        if (locked != null) {
+            locked.taskChanged(this);
+        }
+    }
+
+    /**
+     * Takes the write lock of the project that owns this task, so a change to the
+     * task and to the project's indexes happens as one step, and keeps the project's
+     * version for the snapshots still waiting for it. A task whose tasks were evicted
+     * is made the project's task again first, so the change is not lost.
+     *
+     * @return The locked owner, or null if the task has no owner.
+     */
+    private Project lockOwner() {
+        while (true) {
+            Project current = owner;
+            if (current == null) {
+                return null;
+            }
+            current.writeLock().lock();
+            if (owner == current) {
+                current.reattach(this);
+            }
+            if (owner == current) {
+                current.preserveVersion();
+                return current;
+            }
+            // the task moved while we waited for the lock
+            current.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes an immutable copy of the task. The caller holds the owner's lock.
+     *
+     * @param previous The copy taken for an earlier snapshot, or null.
+     * @return previous if the task has not changed since it was taken, else a new copy.
+     */
+    TaskSnapshot snapshot(TaskSnapshot previous) {
+        if (previous != null && previous.id == id && previous.description == description
+                && previous.prio == prio && previous.state == state
+                && previous.takenBy == takenBy && previous.lastUpdate == lastUpdate) {
+            return previous;
+        }
+        return new TaskSnapshot(id, description, prio, state, takenBy, lastUpdate);
+    }
+
+    /**
+     * Takes on the attributes of another object for the same task. The caller holds
+     * the owner's lock.
+     *
+     * @param current The object holding the task's current attributes.
+     */
+    void copyFrom(Task current) {
+        description = current.description;
+        id = current.id;
+        takenBy = current.takenBy;
+        state = current.state;
+        lastUpdate = current.lastUpdate;
+        prio = current.prio;
+    }
+
+    /**
+     * Set the project that owns this task, or null when it is removed from it.
+     *
+     * @param owner The owning project.
+     */
+    void setOwner(Project owner) {
+        this.owner = owner;
+    }
+
+    private static byte prioCode(TaskPrio prio) {
+        return prio == null ? 0 : (byte) (prio.ordinal() + 1);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("description", description);
+        fields.put("id", id);
+        fields.put("takenBy", takenBy);
+        fields.put("state", getState());
+        fields.put("lastUpdate", getLastUpdate());
+        fields.put("prio", getPrio());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        description = (String) fields.get("description", null);
+        id = fields.get("id", 0);
+        takenBy = StringDictionary.ASSIGNEES.intern((String) fields.get("takenBy", null));
+        TaskState readState = (TaskState) fields.get("state", null);
+        state = readState == null ? 0 : (byte) (readState.ordinal() + 1);
+        LocalDate readLastUpdate = (LocalDate) fields.get("lastUpdate", null);
+        lastUpdate = readLastUpdate == null ? NO_DATE : Math.toIntExact(readLastUpdate.toEpochDay());
+        prio = prioCode((TaskPrio) fields.get("prio", null));
     }
 
     /**
@@ -154,7 +491,7 @@ public class Task implements Comparable<Task>, Serializable {
      */
     @Override
     public int compareTo(Task other) {
-        int comparePrio = this.prio.compareTo(other.prio);
+        int comparePrio = this.getPrio().compareTo(other.getPrio());
         if (comparePrio == 0) {
             return this.description.compareTo(other.description);
         } else {
@@ -194,9 +531,9 @@ public class Task implements Comparable<Task>, Serializable {
                 "description='" + description + '\'' +
                 ", id=" + id +
                 ", takenBy='" + takenBy + '\'' +
-                ", state=" + state +
-                ", lastUpdate=" + lastUpdate +
-                ", prio=" + prio +
+                ", state=" + getState() +
+                ", lastUpdate=" + getLastUpdate() +
+                ", prio=" + getPrio() +
                 '}';
     }
 }
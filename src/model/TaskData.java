@@ -0,0 +1,64 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * The attributes of a task to be added with {@link Project#addTasks}, which gives
+ * the task its ID, or with {@link Project#restoreTasks}, which is given the ID along
+ * with them.
+ */
+public final class TaskData {
+    private final String description;
+    private final TaskPrio prio;
+    private final TaskState state;
+    private final String takenBy;
+    private final LocalDate lastUpdate;
+
+    /**
+     * Creates the attributes of a new task that has no state and nobody working on it.
+     *
+     * @param description The description of the task.
+     * @param prio        The priority of the task.
+     */
+    public TaskData(String description, TaskPrio prio) {
+        this(description, prio, null, null, null);
+    }
+
+    /**
+     * Creates the attributes of a task.
+     *
+     * @param description The description of the task.
+     * @param prio        The priority of the task.
+     * @param state       The state of the task, or null.
+     * @param takenBy     The user who has taken the task, or null.
+     * @param lastUpdate  The date of the last update of the task, or null for the
+     *                    date the state or assignee is set.
+     */
+    public TaskData(String description, TaskPrio prio, TaskState state, String takenBy, LocalDate lastUpdate) {
+        this.description = description;
+        this.prio = prio;
+        this.state = state;
+        this.takenBy = takenBy;
+        this.lastUpdate = lastUpdate;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public TaskPrio getPrio() {
+        return prio;
+    }
+
+    public TaskState getState() {
+        return state;
+    }
+
+    public String getTakenBy() {
+        return takenBy;
+    }
+
+    public LocalDate getLastUpdate() {
+        return lastUpdate;
+    }
+}
@@ -0,0 +1,163 @@
+package model;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+
+/**
+ * Secondary indexes over the tasks of a project, by state, priority and the user who
+ * has taken them. Each index maps a value to the set of task positions in the
+ * project's task list that have it.
+ */
+class TaskIndex {
+    // slots for tasks that have no state or priority yet, after the enum values
+    private static final int NO_STATE = TaskState.values().length;
+    private static final int NO_PRIO = TaskPrio.values().length;
+
+    private final BitSet[] byState = newBitSets(NO_STATE + 1);
+    private final int[] stateCounts = new int[NO_STATE + 1];
+    private final BitSet[] byPrio = newBitSets(NO_PRIO + 1);
+    // assignees are the shared copies of StringDictionary.ASSIGNEES, so identity is enough
+    private final Map<String, BitSet> byTakenBy = new IdentityHashMap<>();
+
+    /**
+     * Indexes a task at a position.
+     *
+     * @param pos  The task's position in the task list.
+     * @param task The task.
+     */
+    void add(int pos, Task task) {
+        byState[stateSlot(task.getState())].set(pos);
+        stateCounts[stateSlot(task.getState())]++;
+        byPrio[prioSlot(task.getPrio())].set(pos);
+        if (task.getTakenBy() != null) {
+            byTakenBy.computeIfAbsent(task.getTakenBy(), k -> new BitSet()).set(pos);
+        }
+    }
+
+    /**
+     * Removes a task at a position from the indexes.
+     *
+     * @param pos  The task's position in the task list.
+     * @param task The task.
+     */
+    void remove(int pos, Task task) {
+        byState[stateSlot(task.getState())].clear(pos);
+        stateCounts[stateSlot(task.getState())]--;
+        byPrio[prioSlot(task.getPrio())].clear(pos);
+        removeTakenBy(pos, task.getTakenBy());
+    }
+
+    /**
+     * Moves a task from the state index of its old state to that of its new state.
+     *
+     * @param pos      The task's position in the task list.
+     * @param oldState The state before the change.
+     * @param newState The state after the change.
+     */
+    void stateChanged(int pos, TaskState oldState, TaskState newState) {
+        byState[stateSlot(oldState)].clear(pos);
+        byState[stateSlot(newState)].set(pos);
+        stateCounts[stateSlot(oldState)]--;
+        stateCounts[stateSlot(newState)]++;
+    }
+
+    /**
+     * Gets the number of tasks in a state.
+     *
+     * @param state The state, or null for tasks that have no state yet.
+     * @return The number of tasks in the state.
+     */
+    int count(TaskState state) {
+        return stateCounts[stateSlot(state)];
+    }
+
+    /**
+     * Moves a task from the priority index of its old priority to that of its new one.
+     *
+     * @param pos     The task's position in the task list.
+     * @param oldPrio The priority before the change.
+     * @param newPrio The priority after the change.
+     */
+    void prioChanged(int pos, TaskPrio oldPrio, TaskPrio newPrio) {
+        byPrio[prioSlot(oldPrio)].clear(pos);
+        byPrio[prioSlot(newPrio)].set(pos);
+    }
+
+    /**
+     * Moves a task from the index of its old taker to that of its new taker.
+     *
+     * @param pos        The task's position in the task list.
+     * @param oldTakenBy The user who had taken the task, or null.
+     * @param newTakenBy The user who has taken the task now, or null.
+     */
+    void takenByChanged(int pos, String oldTakenBy, String newTakenBy) {
+        removeTakenBy(pos, oldTakenBy);
+        if (newTakenBy != null) {
+            byTakenBy.computeIfAbsent(newTakenBy, k -> new BitSet()).set(pos);
+        }
+    }
+
+    /**
+     * Answers a matcher from the indexes, if it is of a type the indexes cover.
+     *
+     * @param matcher The matcher to answer.
+     * @param size    The number of tasks in the project.
+     * @return The positions of the matching tasks, which the caller must not modify,
+     *         or null if the matcher has to be evaluated on every task.
+     */
+    BitSet lookup(ITaskMatcher matcher, int size) {
+        if (matcher instanceof NotDoneMatcher) {
+            BitSet notDone = new BitSet(size);
+            notDone.set(0, size);
+            notDone.andNot(byState[stateSlot(TaskState.DONE)]);
+            return notDone;
+        }
+        if (matcher instanceof PrioMatcher) {
+            return byPrio[prioSlot(((PrioMatcher) matcher).getPrio())];
+        }
+        if (matcher instanceof TakenByMatcher) {
+            String takenBy = ((TakenByMatcher) matcher).getTakenBy();
+            if (takenBy == null) {
+                return null;
+            }
+            // a name no task has been taken by is not the shared copy, and finds nothing
+            BitSet taken = byTakenBy.get(takenBy);
+            return taken != null ? taken : new BitSet();
+        }
+        return null;
+    }
+
+    private void removeTakenBy(int pos, String takenBy) {
+        if (takenBy == null) {
+            return;
+        }
+        BitSet taken = byTakenBy.get(takenBy);
+        if (taken != null) {
+            taken.clear(pos);
+            if (taken.isEmpty()) {
+                byTakenBy.remove(takenBy);
+            }
+        }
+    }
+
+    private static int stateSlot(TaskState state) {
+        return state == null ? NO_STATE : state.ordinal();
+    }
+
+    private static int prioSlot(TaskPrio prio) {
+        return prio == null ? NO_PRIO : prio.ordinal();
+    }
+
+    private static BitSet[] newBitSets(int count) {
+        BitSet[] sets = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            sets[i] = new BitSet();
+        }
+        return sets;
+    }
+}
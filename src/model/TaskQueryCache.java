@@ -0,0 +1,210 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.Counter;
+import metrics.Metrics;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.NotMatcher;
+import model.matcher.OrMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+
+/**
+ * Remembers the results of {@link Project#findTasks(ITaskMatcher)} for the projects of
+ * one manager, so a query repeated on a project that has not changed is answered
+ * without looking at its tasks. Each result is stored with the project's
+ * modification count, and is only used while the count is the same.
+ *
+ * Only the matchers in {@code model.matcher} and combinations of them are cached,
+ * since they are equal by their parameters and always give the same answer for the
+ * same tasks. Lookups take no lock, so readers of different projects do not contend.
+ * Once there are more than a given number of results, or they hold more than a given
+ * number of tasks in total, one thread at a time drops the results used least
+ * recently, as far as their use times tell, until the cache is well below its limits.
+ */
+class TaskQueryCache {
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+    static final long DEFAULT_MAX_TASKS = 4_000_000;
+
+    private static final Counter HITS = Metrics.counter("tasks.findTasks.cacheHits");
+    private static final Counter MISSES = Metrics.counter("tasks.findTasks.cacheMisses");
+
+    // use times closer than this are not updated, so hot results are not written on every hit
+    private static final long USE_RESOLUTION_NANOS = 1_000_000;
+
+    private final int maxEntries;
+    private final long maxTasks;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder cachedTasks = new LongAdder();
+    // set while a thread drops results
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    TaskQueryCache(int maxEntries, long maxTasks) {
+        this.maxEntries = maxEntries;
+        this.maxTasks = maxTasks;
+    }
+
+    /**
+     * Tells whether the results of a matcher can be cached.
+     *
+     * @param matcher The matcher.
+     * @return true for the matchers in {@code model.matcher} and combinations of them.
+     */
+    static boolean isCacheable(ITaskMatcher matcher) {
+        if (matcher instanceof AndMatcher) {
+            return ((AndMatcher) matcher).getMatchers().stream().allMatch(TaskQueryCache::isCacheable);
+        }
+        if (matcher instanceof OrMatcher) {
+            return ((OrMatcher) matcher).getMatchers().stream().allMatch(TaskQueryCache::isCacheable);
+        }
+        if (matcher instanceof NotMatcher) {
+            return isCacheable(((NotMatcher) matcher).getMatcher());
+        }
+        return matcher instanceof PrioMatcher || matcher instanceof NotDoneMatcher || matcher instanceof TakenByMatcher;
+    }
+
+    /**
+     * Gets a cached result.
+     *
+     * @param project           The project queried.
+     * @param matcher           The matcher.
+     * @param modificationCount The project's modification count now.
+     * @return The result, or null if there is none for this modification count.
+     */
+    List<Task> get(Project project, ITaskMatcher matcher, long modificationCount) {
+        Key key = new Key(project, matcher);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            MISSES.increment();
+            return null;
+        }
+        if (entry.modificationCount != modificationCount) {
+            remove(key, entry);
+            MISSES.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - entry.lastUsed > USE_RESOLUTION_NANOS) {
+            entry.lastUsed = now;
+        }
+        HITS.increment();
+        return entry.result;
+    }
+
+    /**
+     * Caches a result, dropping the least recently used ones if the cache is full.
+     *
+     * @param project           The project queried.
+     * @param matcher           The matcher.
+     * @param modificationCount The project's modification count the result was found at.
+     * @param result            The result, which must not be modified any more.
+     */
+    void put(Project project, ITaskMatcher matcher, long modificationCount, List<Task> result) {
+        if (result.size() > maxTasks) {
+            return;
+        }
+        Entry previous = entries.put(new Key(project, matcher), new Entry(modificationCount, result));
+        cachedTasks.add(result.size() - (previous != null ? previous.result.size() : 0));
+        if (entries.size() > maxEntries || cachedTasks.sum() > maxTasks) {
+            evict();
+        }
+    }
+
+    /**
+     * Drops the least recently used results until the cache is at 7/8 of its limits,
+     * so it is not done again for the next few results. Threads that find another one
+     * doing it go on without waiting.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<Key, Entry>> byUse = new ArrayList<>(entries.entrySet());
+            byUse.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+            long entryTarget = maxEntries - maxEntries / 8;
+            long taskTarget = maxTasks - maxTasks / 8;
+            for (Map.Entry<Key, Entry> e : byUse) {
+                if (entries.size() <= entryTarget && cachedTasks.sum() <= taskTarget) {
+                    break;
+                }
+                remove(e.getKey(), e.getValue());
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            cachedTasks.add(-entry.result.size());
+        }
+    }
+
+    /**
+     * Drops the cached results of a project.
+     *
+     * @param project The project.
+     */
+    void invalidate(Project project) {
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (e.getKey().project == project) {
+                remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    void clear() {
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            remove(e.getKey(), e.getValue());
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // projects are equal by title, so the key holds on to the project itself
+    private static final class Key {
+        private final Project project;
+        private final ITaskMatcher matcher;
+
+        Key(Project project, ITaskMatcher matcher) {
+            this.project = project;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).project == project && ((Key) o).matcher.equals(matcher);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(project) * 31 + matcher.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final long modificationCount;
+        private final List<Task> result;
+        // System.nanoTime of the last use, roughly
+        private volatile long lastUsed = System.nanoTime();
+
+        Entry(long modificationCount, List<Task> result) {
+            this.modificationCount = modificationCount;
+            this.result = result;
+        }
+    }
+}
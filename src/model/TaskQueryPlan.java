@@ -0,0 +1,124 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotMatcher;
+import model.matcher.OrMatcher;
+
+/**
+ * A plan for answering a matcher from a project's {@link TaskIndex}: a set of candidate
+ * task positions taken from the indexes, and the matchers the indexes could not answer,
+ * which still have to be checked on each candidate.
+ */
+class TaskQueryPlan {
+    private final BitSet candidates;
+    private final List<ITaskMatcher> residual;
+
+    private TaskQueryPlan(BitSet candidates, List<ITaskMatcher> residual) {
+        this.candidates = candidates;
+        this.residual = residual;
+    }
+
+    /**
+     * Plans a matcher. Leaf matchers are looked up in the index. The children of an
+     * {@link AndMatcher} are intersected from the smallest candidate set up, an
+     * {@link OrMatcher} is the union and a {@link NotMatcher} the complement of fully
+     * indexed children.
+     *
+     * @param matcher The matcher to plan.
+     * @param index   The project's task index.
+     * @param size    The number of tasks in the project.
+     * @return The plan, or null if the matcher has to be evaluated on every task.
+     */
+    static TaskQueryPlan plan(ITaskMatcher matcher, TaskIndex index, int size) {
+        if (matcher instanceof AndMatcher) {
+            return planAnd(((AndMatcher) matcher).getMatchers(), index, size);
+        }
+        if (matcher instanceof OrMatcher) {
+            BitSet union = new BitSet(size);
+            for (ITaskMatcher child : ((OrMatcher) matcher).getMatchers()) {
+                TaskQueryPlan childPlan = plan(child, index, size);
+                if (childPlan == null || !childPlan.isExact()) {
+                    return null;
+                }
+                union.or(childPlan.candidates);
+            }
+            return new TaskQueryPlan(union, List.of());
+        }
+        if (matcher instanceof NotMatcher) {
+            TaskQueryPlan childPlan = plan(((NotMatcher) matcher).getMatcher(), index, size);
+            if (childPlan == null || !childPlan.isExact()) {
+                return null;
+            }
+            BitSet complement = new BitSet(size);
+            complement.set(0, size);
+            complement.andNot(childPlan.candidates);
+            return new TaskQueryPlan(complement, List.of());
+        }
+        BitSet hits = index.lookup(matcher, size);
+        return hits != null ? new TaskQueryPlan(hits, List.of()) : null;
+    }
+
+    private static TaskQueryPlan planAnd(List<ITaskMatcher> matchers, TaskIndex index, int size) {
+        List<BitSet> indexed = new ArrayList<>();
+        List<ITaskMatcher> residual = new ArrayList<>();
+        for (ITaskMatcher child : matchers) {
+            TaskQueryPlan childPlan = plan(child, index, size);
+            if (childPlan == null) {
+                residual.add(child);
+            }
+            else {
+                indexed.add(childPlan.candidates);
+                residual.addAll(childPlan.residual);
+            }
+        }
+        if (indexed.isEmpty()) {
+            return null;
+        }
+
+        // most selective first, so the intersection shrinks as early as possible
+        indexed.sort(Comparator.comparingInt(BitSet::cardinality));
+        BitSet candidates = (BitSet) indexed.get(0).clone();
+        for (int i = 1; i < indexed.size() && !candidates.isEmpty(); i++) {
+            candidates.and(indexed.get(i));
+        }
+        return new TaskQueryPlan(candidates, residual);
+    }
+
+    /**
+     * Gets the candidate task positions. The caller must not modify them.
+     *
+     * @return The candidate positions.
+     */
+    BitSet getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Checks whether every candidate matches, so no matcher has to be evaluated.
+     *
+     * @return true if there are no residual matchers.
+     */
+    boolean isExact() {
+        return residual.isEmpty();
+    }
+
+    /**
+     * Checks a candidate against the matchers the indexes could not answer.
+     *
+     * @param task The candidate task.
+     * @return true if the task matches all residual matchers.
+     */
+    boolean matchesResidual(Task task) {
+        for (ITaskMatcher matcher : residual) {
+            if (!matcher.match(task)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
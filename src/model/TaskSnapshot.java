@@ -0,0 +1,98 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * An immutable copy of a task as it was when a {@link ProjectSnapshot} was taken.
+ * The attributes are kept in the compact form of {@link Task}. Snapshots of the same
+ * project share the copies of the tasks that did not change between them.
+ */
+public final class TaskSnapshot {
+
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final TaskState[] STATES = TaskState.values();
+
+    final int id;
+    final String description;
+    // ordinal + 1, 0 for none
+    final byte prio;
+    final byte state;
+    final String takenBy;
+    // epoch day, or Task.NO_DATE
+    final int lastUpdate;
+
+    TaskSnapshot(int id, String description, byte prio, byte state, String takenBy, int lastUpdate) {
+        this.id = id;
+        this.description = description;
+        this.prio = prio;
+        this.state = state;
+        this.takenBy = takenBy;
+        this.lastUpdate = lastUpdate;
+    }
+
+    /**
+     * Get the unique ID of the task.
+     *
+     * @return The ID of the task.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the description of the task.
+     *
+     * @return The description of the task.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the priority of the task.
+     *
+     * @return The priority of the task.
+     */
+    public TaskPrio getPrio() {
+        return prio == 0 ? null : PRIOS[prio - 1];
+    }
+
+    /**
+     * Get the state of the task.
+     *
+     * @return The state of the task.
+     */
+    public TaskState getState() {
+        return state == 0 ? null : STATES[state - 1];
+    }
+
+    /**
+     * Get the user who has taken the task.
+     *
+     * @return The user who has taken the task, or null if not taken.
+     */
+    public String getTakenBy() {
+        return takenBy;
+    }
+
+    /**
+     * Get the date of the last update of the task.
+     *
+     * @return The date of the last update.
+     */
+    public LocalDate getLastUpdate() {
+        return lastUpdate == Task.NO_DATE ? null : LocalDate.ofEpochDay(lastUpdate);
+    }
+
+    @Override
+    public String toString() {
+        return "TaskSnapshot{" +
+                "description='" + description + '\'' +
+                ", id=" + id +
+                ", takenBy='" + takenBy + '\'' +
+                ", state=" + getState() +
+                ", lastUpdate=" + getLastUpdate() +
+                ", prio=" + getPrio() +
+                '}';
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index from the trigrams (three character substrings) of project titles
+ * to the projects whose titles contain them. Used by {@link ProjectsManager} to narrow
+ * a substring search to a small set of candidates before the exact check.
+ */
+class TitleTrigramIndex {
+    private final Map<Long, Set<Project>> postings = new HashMap<>();
+
+    /**
+     * Adds all trigrams of the title to the index.
+     *
+     * @param project The project to index.
+     * @param title   The title to index the project under.
+     */
+    void add(Project project, String title) {
+        for (int i = 0; i + 3 <= title.length(); i++) {
+            postings.computeIfAbsent(trigram(title, i),
+                    k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(project);
+        }
+    }
+
+    /**
+     * Removes all trigrams of the title from the index.
+     *
+     * @param project The project to remove.
+     * @param title   The title the project was indexed under.
+     */
+    void remove(Project project, String title) {
+        for (int i = 0; i + 3 <= title.length(); i++) {
+            Long key = trigram(title, i);
+            Set<Project> posting = postings.get(key);
+            if (posting != null) {
+                posting.remove(project);
+                if (posting.isEmpty()) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every project from the index.
+     */
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Finds the projects whose titles contain the given string.
+     *
+     * @param tString The substring to search for.
+     * @return The matching projects ordered by ID, or null if the string is shorter
+     *         than a trigram and the caller has to scan all titles.
+     */
+    List<Project> find(String tString) {
+        if (tString.length() < 3) {
+            return null;
+        }
+        Set<Project> smallest = null;
+        for (int i = 0; i + 3 <= tString.length(); i++) {
+            Set<Project> posting = postings.get(trigram(tString, i));
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+
+        List<Project> found = new ArrayList<>();
+        for (Project p : smallest) {
+            if (p.getTitle().contains(tString)) {
+                found.add(p);
+            }
+        }
+        found.sort((p1, p2) -> Integer.compare(p1.getId(), p2.getId()));
+        return found;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
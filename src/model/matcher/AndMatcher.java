@@ -0,0 +1,40 @@
+package model.matcher;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import model.Task;
+
+/**
+ * Matches tasks that are matched by all of the given matchers.
+ */
+public class AndMatcher implements ITaskMatcher {
+    private final List<ITaskMatcher> matchers;
+
+    public AndMatcher(ITaskMatcher... matchers) {
+        this.matchers = Collections.unmodifiableList(Arrays.asList(matchers.clone()));
+    }
+
+    public List<ITaskMatcher> getMatchers() {
+        return matchers;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for (ITaskMatcher matcher : matchers) {
+            if (!matcher.match(task)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AndMatcher && ((AndMatcher) o).matchers.equals(matchers);
+    }
+
+    @Override
+    public int hashCode() {
+        return AndMatcher.class.hashCode() * 31 + matchers.hashCode();
+    }
+}
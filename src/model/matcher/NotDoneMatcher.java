@@ -6,4 +6,14 @@ public class NotDoneMatcher implements ITaskMatcher {
     public boolean match (Task task) {
         return task.getState() != TaskState.DONE;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NotDoneMatcher;
+    }
+
+    @Override
+    public int hashCode() {
+        return NotDoneMatcher.class.hashCode();
+    }
 }
@@ -0,0 +1,33 @@
+package model.matcher;
+import java.util.Objects;
+import model.Task;
+
+/**
+ * Matches tasks that are not matched by the given matcher.
+ */
+public class NotMatcher implements ITaskMatcher {
+    private final ITaskMatcher matcher;
+
+    public NotMatcher(ITaskMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    public ITaskMatcher getMatcher() {
+        return matcher;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return !matcher.match(task);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NotMatcher && Objects.equals(((NotMatcher) o).matcher, matcher);
+    }
+
+    @Override
+    public int hashCode() {
+        return NotMatcher.class.hashCode() * 31 + Objects.hashCode(matcher);
+    }
+}
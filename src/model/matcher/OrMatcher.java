@@ -0,0 +1,40 @@
+package model.matcher;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import model.Task;
+
+/**
+ * Matches tasks that are matched by at least one of the given matchers.
+ */
+public class OrMatcher implements ITaskMatcher {
+    private final List<ITaskMatcher> matchers;
+
+    public OrMatcher(ITaskMatcher... matchers) {
+        this.matchers = Collections.unmodifiableList(Arrays.asList(matchers.clone()));
+    }
+
+    public List<ITaskMatcher> getMatchers() {
+        return matchers;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for (ITaskMatcher matcher : matchers) {
+            if (matcher.match(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof OrMatcher && ((OrMatcher) o).matchers.equals(matchers);
+    }
+
+    @Override
+    public int hashCode() {
+        return OrMatcher.class.hashCode() * 31 + matchers.hashCode();
+    }
+}
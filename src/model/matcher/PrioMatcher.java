@@ -8,8 +8,22 @@ public class PrioMatcher implements ITaskMatcher{
         this.prio = prio;
     }
 
+    public TaskPrio getPrio(){
+        return prio;
+    }
+
     @Override
     public boolean match(Task task){
         return task.getPrio() == prio;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o){
+        return o instanceof PrioMatcher && ((PrioMatcher) o).prio == prio;
+    }
+
+    @Override
+    public int hashCode(){
+        return PrioMatcher.class.hashCode() * 31 + (prio != null ? prio.hashCode() : 0);
+    }
+}
@@ -1,15 +1,53 @@
 package model.matcher;
+import java.util.Objects;
+import model.StringDictionary;
 import model.Task;
 
 public class TakenByMatcher implements ITaskMatcher {
 
-    private String takenBy;
+    // the name as given, and the dictionary's copy, which tasks taken by the user
+    // share, once the name is in it; until then the name is looked up again on every
+    // use, as a task may have been taken by it since, and is not added itself
+    private final String takenBy;
+    private volatile String shared;
 
     public TakenByMatcher(String takenBy) {
         this.takenBy = takenBy;
+        this.shared = StringDictionary.ASSIGNEES.lookup(takenBy);
+    }
+
+    /**
+     * Gets the name the matcher looks for.
+     *
+     * @return The dictionary's copy of the name if a task has been taken by it,
+     *         otherwise the name as given, which no task is taken by.
+     */
+    public String getTakenBy() {
+        String s = sharedCopy();
+        return s != null ? s : takenBy;
     }
 
     public boolean match(Task task) {
-        return takenBy.equals(task.getTakenBy());
+        String s = sharedCopy();
+        return s != null && s == task.getTakenBy();
+    }
+
+    private String sharedCopy() {
+        String s = shared;
+        if (s == null && takenBy != null) {
+            s = StringDictionary.ASSIGNEES.lookup(takenBy);
+            shared = s;
+        }
+        return s;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TakenByMatcher && Objects.equals(((TakenByMatcher) o).takenBy, takenBy);
+    }
+
+    @Override
+    public int hashCode() {
+        return TakenByMatcher.class.hashCode() * 31 + Objects.hashCode(takenBy);
     }
 }
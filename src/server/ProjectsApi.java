@@ -0,0 +1,302 @@
+package server;
+
+import io.Json;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import model.exception.TitleNotUniqueException;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+
+/**
+ * The requests of the HTTP API over a {@link ProjectsManager}, independent of the
+ * server that receives them. Request and response bodies are flat JSON objects, or
+ * arrays of them; priorities and states are enum names and dates ISO dates.
+ *
+ * <pre>
+ * GET   /projects?title=..                     projects whose title contains the text
+ * POST  /projects                              {"title":..,"descr":..}
+ * GET   /projects/{id}
+ * GET   /projects/{id}/tasks?prio=..&amp;notDone=true&amp;takenBy=..&amp;offset=..&amp;limit=..
+ * POST  /projects/{id}/tasks                   {"description":..,"prio":..}
+ * GET   /projects/{id}/tasks/{taskId}
+ * PATCH /projects/{id}/tasks/{taskId}          {"description":..,"prio":..,"state":..,"lastUpdate":..}
+ * POST  /projects/{id}/tasks/{taskId}/claim    {"takenBy":..,"version":..}
+ * </pre>
+ * A claim with a version only succeeds if the task has not changed since it was read
+ * at that version.
+ */
+class ProjectsApi {
+
+    /** The status and JSON body of a response. */
+    static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /** A request that cannot be carried out, with the status to answer it with. */
+    static final class ApiException extends Exception {
+        private static final long serialVersionUID = 3409582712683465180L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final ProjectsManager manager;
+
+    ProjectsApi(ProjectsManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Carries out a request.
+     *
+     * @param method The HTTP method.
+     * @param path   The path, without the query.
+     * @param query  The decoded query parameters.
+     * @param body   The request body, empty if there is none.
+     * @return The response.
+     */
+    Response handle(String method, String path, Map<String, String> query, String body) {
+        try {
+            return route(method, path.split("/"), query, body);
+        } catch (ApiException e) {
+            return error(e.status, e.getMessage());
+        } catch (TitleNotUniqueException e) {
+            return error(409, e.getMessage());
+        } catch (IOException | IllegalArgumentException | DateTimeException e) {
+            return error(400, e.getMessage());
+        }
+    }
+
+    // parts[0] is empty, as the path starts with a slash
+    private Response route(String method, String[] parts, Map<String, String> query, String body)
+            throws ApiException, IOException {
+        if (parts.length < 2 || !parts[1].equals("projects")) {
+            throw new ApiException(404, "Not found");
+        }
+        if (parts.length == 2) {
+            switch (method) {
+                case "GET":
+                    return ok(projectsJson(query.containsKey("title")
+                            ? manager.findProjects(query.get("title"))
+                            : manager.getProjects()));
+                case "POST":
+                    Map<String, String> fields = Json.parseObject(body);
+                    Project created = manager.addProject(required(fields, "title"), fields.get("descr"));
+                    return new Response(201, projectJson(created));
+                default:
+                    throw notAllowed(method);
+            }
+        }
+
+        Project project = manager.getProjectById(id(parts[2]));
+        if (project == null) {
+            throw new ApiException(404, "No project " + parts[2]);
+        }
+        if (parts.length == 3) {
+            requireMethod(method, "GET");
+            return ok(projectJson(project));
+        }
+        if (!parts[3].equals("tasks") || parts.length > 6) {
+            throw new ApiException(404, "Not found");
+        }
+        if (parts.length == 4) {
+            switch (method) {
+                case "GET":
+                    return ok(tasksJson(findTasks(project, query)));
+                case "POST":
+                    Map<String, String> fields = Json.parseObject(body);
+                    String prio = fields.get("prio");
+                    Task created = project.addTask(required(fields, "description"),
+                            prio == null ? TaskPrio.Medium : TaskPrio.valueOf(prio));
+                    return new Response(201, taskJson(created));
+                default:
+                    throw notAllowed(method);
+            }
+        }
+
+        Task task = project.getTaskById(id(parts[4]));
+        if (task == null) {
+            throw new ApiException(404, "No task " + parts[4] + " in project " + parts[2]);
+        }
+        if (parts.length == 6) {
+            if (!parts[5].equals("claim")) {
+                throw new ApiException(404, "Not found");
+            }
+            requireMethod(method, "POST");
+            return claim(task, Json.parseObject(body));
+        }
+        switch (method) {
+            case "GET":
+                return ok(taskJson(task));
+            case "PATCH":
+                update(task, Json.parseObject(body));
+                return ok(taskJson(task));
+            default:
+                throw notAllowed(method);
+        }
+    }
+
+    private static List<Task> findTasks(Project project, Map<String, String> query) {
+        List<ITaskMatcher> matchers = new ArrayList<>();
+        if (query.containsKey("prio")) {
+            matchers.add(new PrioMatcher(TaskPrio.valueOf(query.get("prio"))));
+        }
+        if (Boolean.parseBoolean(query.get("notDone"))) {
+            matchers.add(new NotDoneMatcher());
+        }
+        if (query.containsKey("takenBy")) {
+            matchers.add(new TakenByMatcher(query.get("takenBy")));
+        }
+        // an and of no matchers matches every task
+        ITaskMatcher matcher = matchers.size() == 1
+                ? matchers.get(0)
+                : new AndMatcher(matchers.toArray(new ITaskMatcher[0]));
+        if (!query.containsKey("offset") && !query.containsKey("limit")) {
+            return project.findTasks(matcher);
+        }
+        int offset = query.containsKey("offset") ? Integer.parseInt(query.get("offset")) : 0;
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : Integer.MAX_VALUE;
+        return project.findTasks(matcher, offset, limit);
+    }
+
+    /**
+     * Sets the given fields of a task. Every field is parsed before any is set, so an
+     * invalid one leaves the task as it was, and the rest are set as one change.
+     */
+    private static void update(Task task, Map<String, String> fields) {
+        String prio = fields.get("prio");
+        TaskPrio newPrio = prio == null ? null : TaskPrio.valueOf(prio);
+        String state = fields.get("state");
+        TaskState newState = state == null ? null : TaskState.valueOf(state);
+        String lastUpdate = fields.get("lastUpdate");
+        LocalDate newLastUpdate = lastUpdate == null ? null : LocalDate.parse(lastUpdate);
+
+        task.update(t -> {
+            if (fields.containsKey("description")) {
+                t.setDescription(fields.get("description"));
+            }
+            if (fields.containsKey("prio")) {
+                t.setPrio(newPrio);
+            }
+            if (fields.containsKey("state")) {
+                t.setState(newState);
+            }
+            if (fields.containsKey("lastUpdate")) {
+                t.setLastUpdate(newLastUpdate);
+            }
+        });
+    }
+
+    private static Response claim(Task task, Map<String, String> fields) throws ApiException, IOException {
+        String takenBy = required(fields, "takenBy");
+        String version = fields.get("version");
+        boolean claimed = version == null
+                ? task.tryClaim(takenBy)
+                : task.tryClaim(takenBy, Integer.parseInt(version));
+        if (!claimed) {
+            throw new ApiException(409, version == null ? "Task already taken" : "Task taken or changed");
+        }
+        return ok(taskJson(task));
+    }
+
+    static String projectJson(Project p) {
+        return "{\"id\":" + p.getId()
+                + ",\"title\":" + Json.quote(p.getTitle())
+                + ",\"descr\":" + Json.quote(p.getDescr())
+                + ",\"created\":" + Json.quote(p.getCreated() == null ? null : p.getCreated().toString())
+                + ",\"toDo\":" + p.getTaskCount(TaskState.TO_DO)
+                + ",\"inProgress\":" + p.getTaskCount(TaskState.IN_PROGRESS)
+                + ",\"done\":" + p.getTaskCount(TaskState.DONE)
+                + "}";
+    }
+
+    static String taskJson(Task t) {
+        return "{\"id\":" + t.getId()
+                + ",\"description\":" + Json.quote(t.getDescription())
+                + ",\"prio\":" + Json.quote(t.getPrio() == null ? null : t.getPrio().name())
+                + ",\"state\":" + Json.quote(t.getState() == null ? null : t.getState().name())
+                + ",\"takenBy\":" + Json.quote(t.getTakenBy())
+                + ",\"lastUpdate\":" + Json.quote(t.getLastUpdate() == null ? null : t.getLastUpdate().toString())
+                + ",\"version\":" + t.getVersion()
+                + "}";
+    }
+
+    private static String projectsJson(Collection<Project> projects) {
+        StringBuilder sb = new StringBuilder("[");
+        for (Project p : projects) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(projectJson(p));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String tasksJson(List<Task> tasks) {
+        StringBuilder sb = new StringBuilder(tasks.size() * 128 + 2).append('[');
+        for (Task t : tasks) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append(taskJson(t));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static Response ok(String body) {
+        return new Response(200, body);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "{\"error\":" + Json.quote(message) + "}");
+    }
+
+    private static int id(String part) throws ApiException {
+        try {
+            return Integer.parseInt(part);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "Not found");
+        }
+    }
+
+    private static String required(Map<String, String> fields, String name) throws ApiException {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new ApiException(400, "Missing " + name);
+        }
+        return value;
+    }
+
+    private static void requireMethod(String method, String allowed) throws ApiException {
+        if (!method.equals(allowed)) {
+            throw notAllowed(method);
+        }
+    }
+
+    private static ApiException notAllowed(String method) {
+        return new ApiException(405, "Method " + method + " not allowed");
+    }
+}
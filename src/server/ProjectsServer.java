@@ -0,0 +1,148 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import metrics.Histogram;
+import metrics.Metrics;
+import metrics.MetricsEndpoint;
+import model.ProjectsManager;
+
+/**
+ * Serves the {@link ProjectsApi} over HTTP with the JDK's built-in server, so many
+ * users can work with one manager at the same time. Each request runs on a virtual
+ * thread where the JDK has them (21 and later), and on a fixed pool of platform
+ * threads otherwise; the server's own selector thread keeps idle connections open
+ * without a thread each. The metrics, including the latency of every request, are
+ * served at {@code /metrics}.
+ */
+public class ProjectsServer implements AutoCloseable {
+    // pending connections the operating system may queue before they are accepted
+    private static final int BACKLOG = 4096;
+    private static final int MAX_BODY_LENGTH = 1024 * 1024;
+
+    private static final Histogram REQUEST_LATENCY = Metrics.latency("server.requests");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ProjectsApi api;
+
+    private ProjectsServer(HttpServer server, ExecutorService executor, ProjectsApi api) {
+        this.server = server;
+        this.executor = executor;
+        this.api = api;
+    }
+
+    /**
+     * Starts serving a manager.
+     *
+     * @param manager The manager.
+     * @param address The address to listen on; port 0 picks a free port.
+     * @return The running server.
+     */
+    public static ProjectsServer start(ProjectsManager manager, InetSocketAddress address) throws IOException {
+        HttpServer http = HttpServer.create(address, BACKLOG);
+        ExecutorService executor = newRequestExecutor();
+        ProjectsServer server = new ProjectsServer(http, executor, new ProjectsApi(manager));
+        http.createContext("/projects", server::handle);
+        http.createContext("/metrics", MetricsEndpoint::handle);
+        http.setExecutor(executor);
+        http.start();
+        return server;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, letting requests in progress finish for up to a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the executor the requests run on: a new virtual thread per request if
+     * the JDK has virtual threads, else a fixed pool of daemon threads.
+     *
+     * @return The executor.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // before JDK 21; requests are short, so a few threads per core keep up
+            int threads = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "projects-server-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = Metrics.start();
+        try (exchange) {
+            URI uri = exchange.getRequestURI();
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] bytes = in.readNBytes(MAX_BODY_LENGTH + 1);
+                if (bytes.length > MAX_BODY_LENGTH) {
+                    send(exchange, new ProjectsApi.Response(413, "{\"error\":\"Request body too large\"}"));
+                    return;
+                }
+                body = new String(bytes, StandardCharsets.UTF_8);
+            }
+            send(exchange, api.handle(exchange.getRequestMethod(), uri.getPath(), query(uri.getRawQuery()), body));
+        } finally {
+            REQUEST_LATENCY.recordSince(start);
+        }
+    }
+
+    private static void send(HttpExchange exchange, ProjectsApi.Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
@@ -93,15 +93,10 @@ class CurrentProjectUI {
         System.out.print("Enter Task ID: ");
         int taskId = scanner.nextInt();
 
-        for (Task task : currentProject.getTasks()) {
-            if (task.getId() == taskId) {
-                if (currentProject.removeTask(task)) {
-                    System.out.println("Task with ID " + taskId + " removed.");
-                } else {
-                    System.out.println("Failed to remove task with ID " + taskId);
-                }
-                return; // Uppgiften har tagits bort, avsluta loopen
-            }
+        if (currentProject.removeTaskById(taskId)) {
+            System.out.println("Task with ID " + taskId + " removed.");
+        } else {
+            System.out.println("Failed to remove task with ID " + taskId);
         }
     }
 